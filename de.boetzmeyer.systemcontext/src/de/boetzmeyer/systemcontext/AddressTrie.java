@@ -0,0 +1,191 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.boetzmeyer.systemmodel.IRecordable;
+
+/**
+ * Binary prefix trie over IPv4 addresses, used to answer CIDR range queries
+ * like "10.4.0.0/16" without scanning all entries. Like the name index it is
+ * loaded lazily and kept in sync by the context services.
+ */
+abstract class AddressTrie<T extends IRecordable> {
+	private static final int ADDRESS_BITS = 32;
+	private static final long INVALID_ADDRESS = -1L;
+
+	private final Node<T> root = new Node<T>();
+	private final Map<Long, Long> addressesByKey = new HashMap<Long, Long>();
+	private boolean loaded;
+
+	protected abstract List<T> load();
+
+	protected abstract String getAddress(T inEntry);
+
+	public synchronized List<T> findInRange(final String inRange) {
+		final List<T> entries = new ArrayList<T>();
+		if (inRange != null) {
+			final int separator = inRange.indexOf('/');
+			final long address;
+			final int prefixLength;
+			if (separator < 0) {
+				address = parseAddress(inRange);
+				prefixLength = ADDRESS_BITS;
+			} else {
+				address = parseAddress(inRange.substring(0, separator));
+				prefixLength = parsePrefixLength(inRange.substring(separator + 1));
+			}
+			if ((address != INVALID_ADDRESS) && (prefixLength >= 0)) {
+				ensureLoaded();
+				Node<T> node = root;
+				for (int i = 0; (i < prefixLength) && (node != null); i++) {
+					node = node.children[bit(address, i)];
+				}
+				if (node != null) {
+					collect(node, entries);
+				}
+			}
+		}
+		return entries;
+	}
+
+	public synchronized void add(final T inEntry) {
+		if ((inEntry != null) && loaded) {
+			remove(inEntry.getPrimaryKey());
+			put(inEntry);
+		}
+	}
+
+	public synchronized void remove(final long inPrimaryKey) {
+		final Long address = addressesByKey.remove(inPrimaryKey);
+		if (address != null) {
+			erase(root, address.longValue(), 0, inPrimaryKey);
+		}
+	}
+
+	private void ensureLoaded() {
+		if (!loaded) {
+			final List<T> entries = load();
+			for (T entry : entries) {
+				if (entry != null) {
+					put(entry);
+				}
+			}
+			loaded = true;
+		}
+	}
+
+	private void put(final T inEntry) {
+		final long address = parseAddress(getAddress(inEntry));
+		if (address != INVALID_ADDRESS) {
+			Node<T> node = root;
+			for (int i = 0; i < ADDRESS_BITS; i++) {
+				final int bit = bit(address, i);
+				if (node.children[bit] == null) {
+					node.children[bit] = new Node<T>();
+				}
+				node = node.children[bit];
+			}
+			if (node.entries == null) {
+				node.entries = new ArrayList<T>(1);
+			}
+			node.entries.add(inEntry);
+			addressesByKey.put(inEntry.getPrimaryKey(), address);
+		}
+	}
+
+	private boolean erase(final Node<T> inNode, final long inAddress, final int inDepth, final long inPrimaryKey) {
+		if (inDepth == ADDRESS_BITS) {
+			if (inNode.entries != null) {
+				for (int i = inNode.entries.size() - 1; i >= 0; i--) {
+					if (inNode.entries.get(i).getPrimaryKey() == inPrimaryKey) {
+						inNode.entries.remove(i);
+					}
+				}
+				if (inNode.entries.isEmpty()) {
+					inNode.entries = null;
+				}
+			}
+		} else {
+			final int bit = bit(inAddress, inDepth);
+			final Node<T> child = inNode.children[bit];
+			if ((child != null) && erase(child, inAddress, inDepth + 1, inPrimaryKey)) {
+				inNode.children[bit] = null;
+			}
+		}
+		return (inNode != root) && inNode.isEmpty();
+	}
+
+	private static <T> void collect(final Node<T> inNode, final List<T> inEntries) {
+		final Deque<Node<T>> pending = new ArrayDeque<Node<T>>();
+		pending.push(inNode);
+		while (!pending.isEmpty()) {
+			final Node<T> node = pending.pop();
+			if (node.entries != null) {
+				inEntries.addAll(node.entries);
+			}
+			if (node.children[1] != null) {
+				pending.push(node.children[1]);
+			}
+			if (node.children[0] != null) {
+				pending.push(node.children[0]);
+			}
+		}
+	}
+
+	private static int bit(final long inAddress, final int inIndex) {
+		return (int) ((inAddress >>> (ADDRESS_BITS - 1 - inIndex)) & 1L);
+	}
+
+	static long parseAddress(final String inAddress) {
+		if (inAddress == null) {
+			return INVALID_ADDRESS;
+		}
+		final String[] octets = inAddress.trim().split("\\.", -1);
+		if (octets.length != 4) {
+			return INVALID_ADDRESS;
+		}
+		long address = 0L;
+		for (int i = 0; i < octets.length; i++) {
+			final int octet = parseNumber(octets[i], 255);
+			if (octet < 0) {
+				return INVALID_ADDRESS;
+			}
+			address = (address << 8) | octet;
+		}
+		return address;
+	}
+
+	private static int parsePrefixLength(final String inPrefixLength) {
+		return parseNumber(inPrefixLength.trim(), ADDRESS_BITS);
+	}
+
+	private static int parseNumber(final String inNumber, final int inMaxValue) {
+		if ((inNumber.length() == 0) || (inNumber.length() > 3)) {
+			return -1;
+		}
+		int value = 0;
+		for (int i = 0; i < inNumber.length(); i++) {
+			final char c = inNumber.charAt(i);
+			if ((c < '0') || (c > '9')) {
+				return -1;
+			}
+			value = (value * 10) + (c - '0');
+		}
+		return (value <= inMaxValue) ? value : -1;
+	}
+
+	private static final class Node<T> {
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private final Node<T>[] children = new Node[2];
+		private List<T> entries;
+
+		private boolean isEmpty() {
+			return (entries == null) && (children[0] == null) && (children[1] == null);
+		}
+	}
+}
@@ -1,41 +1,183 @@
 package de.boetzmeyer.systemcontext;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import de.boetzmeyer.systemmodel.ApplicationConfig;
+import de.boetzmeyer.systemmodel.ApplicationLink;
+import de.boetzmeyer.systemmodel.IServer;
 import de.boetzmeyer.systemmodel.SystemConfig;
 import de.boetzmeyer.systemmodel.SystemLink;
 
+/**
+ * Rates the connection between two systems by the number of application
+ * links from the applications of the one to the applications of the other.
+ */
 final class Analyser {
+	private static final int PARALLEL_THRESHOLD = 10000;
 
-	public Analyser() {
+	private final IServer systemAccess;
+	private final LinkIndex<ApplicationLink> appLinks;
+
+	public Analyser(final IServer inSystemAccess, final LinkIndex<ApplicationLink> inAppLinks) {
+		systemAccess = inSystemAccess;
+		appLinks = inAppLinks;
 	}
 
+	/**
+	 * The strongest connections between the given systems, strongest first.
+	 * Each returned link is generated, not saved, and carries the number of
+	 * application links as its weight. Pairs without application links are
+	 * left out, so the result may hold fewer than inMaxConnections links.
+	 */
 	public final List<SystemLink> getStrongestSystemLinks(final List<SystemConfig> inSystem, final int inMaxConnections) {
-		final List<SystemLink> links = new ArrayList<SystemLink>();
 		final List<SystemLink> strongestLinks = new ArrayList<SystemLink>();
-		final int systemCount = inSystem.size();
-		for (int i = 0; i < systemCount; i++) {
-			for (int j = 0; j < systemCount; j++) {
+		if ((inSystem != null) && (inMaxConnections > 0)) {
+			final Map<Long, Long> systemsByApp = getSystemsByApp(inSystem);
+			final Map<SystemPair, SystemPair> connections = countConnections(systemsByApp, appLinks.getLinks());
+			final PriorityQueue<SystemPair> strongest = new PriorityQueue<SystemPair>(inMaxConnections + 1, WEAKEST_FIRST);
+			for (SystemPair connection : connections.values()) {
+				strongest.add(connection);
+				if (strongest.size() > inMaxConnections) {
+					strongest.poll();
+				}
+			}
+			final List<SystemPair> result = new ArrayList<SystemPair>(strongest);
+			Collections.sort(result, Collections.reverseOrder(WEAKEST_FIRST));
+			for (SystemPair connection : result) {
 				final SystemLink link = SystemLink.generate();
-				final SystemConfig from = inSystem.get(i);
-				final SystemConfig to = inSystem.get(j);
-				if ((from != null) && (to != null)) {
-					link.setSource(from.getPrimaryKey());
-					link.setDestination(to.getPrimaryKey());
-					final double weight = analyseConnection(link);
-					links.add(link);
+				link.setSource(connection.source);
+				link.setDestination(connection.destination);
+				link.setWeight(connection.count);
+				strongestLinks.add(link);
+			}
+		}
+		return strongestLinks;
+	}
+
+	private Map<Long, Long> getSystemsByApp(final List<SystemConfig> inSystem) {
+		final Map<Long, Long> systems = new HashMap<Long, Long>();
+		for (SystemConfig system : inSystem) {
+			if (system != null) {
+				systems.put(system.getPrimaryKey(), system.getPrimaryKey());
+			}
+		}
+		final Map<Long, Long> systemsByApp = new HashMap<Long, Long>();
+		for (ApplicationConfig app : systemAccess.listApplicationConfig()) {
+			if ((app != null) && systems.containsKey(app.getSystemConfig())) {
+				systemsByApp.put(app.getPrimaryKey(), app.getSystemConfig());
+			}
+		}
+		return systemsByApp;
+	}
+
+	private static Map<SystemPair, SystemPair> countConnections(final Map<Long, Long> inSystemsByApp, final List<ApplicationLink> inAppLinks) {
+		final int threads = Runtime.getRuntime().availableProcessors();
+		if ((inAppLinks.size() < PARALLEL_THRESHOLD) || (threads < 2)) {
+			return count(inSystemsByApp, inAppLinks);
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<Map<SystemPair, SystemPair>>> parts = new ArrayList<Future<Map<SystemPair, SystemPair>>>(threads);
+			final int partSize = (inAppLinks.size() + threads - 1) / threads;
+			for (int from = 0; from < inAppLinks.size(); from += partSize) {
+				final List<ApplicationLink> part = inAppLinks.subList(from, Math.min(from + partSize, inAppLinks.size()));
+				parts.add(executor.submit(new Callable<Map<SystemPair, SystemPair>>() {
+					@Override
+					public Map<SystemPair, SystemPair> call() {
+						return count(inSystemsByApp, part);
+					}
+				}));
+			}
+			final Map<SystemPair, SystemPair> connections = new HashMap<SystemPair, SystemPair>();
+			for (Future<Map<SystemPair, SystemPair>> part : parts) {
+				for (SystemPair partConnection : part.get().values()) {
+					final SystemPair connection = connections.get(partConnection);
+					if (connection == null) {
+						connections.put(partConnection, partConnection);
+					} else {
+						connection.count += partConnection.count;
+					}
 				}
 			}
+			return connections;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return count(inSystemsByApp, inAppLinks);
+		} catch (ExecutionException e) {
+			return count(inSystemsByApp, inAppLinks);
+		} finally {
+			executor.shutdown();
 		}
-		//SystemLink.sortByWeight(links, true);
-		for (int i = 0; i < inMaxConnections; i++) {
-			strongestLinks.add(links.get(i));
+	}
+
+	private static Map<SystemPair, SystemPair> count(final Map<Long, Long> inSystemsByApp, final List<ApplicationLink> inAppLinks) {
+		final Map<SystemPair, SystemPair> connections = new HashMap<SystemPair, SystemPair>();
+		for (ApplicationLink appLink : inAppLinks) {
+			final Long source = inSystemsByApp.get(appLink.getSource());
+			final Long destination = inSystemsByApp.get(appLink.getDestination());
+			if ((source != null) && (destination != null) && !source.equals(destination)) {
+				final SystemPair key = new SystemPair(source, destination);
+				final SystemPair connection = connections.get(key);
+				if (connection == null) {
+					key.count = 1;
+					connections.put(key, key);
+				} else {
+					connection.count++;
+				}
+			}
 		}
-		return strongestLinks;
+		return connections;
 	}
 
-	private double analyseConnection(SystemLink link) {
-		return 0;
+	private static final Comparator<SystemPair> WEAKEST_FIRST = new Comparator<SystemPair>() {
+		@Override
+		public int compare(final SystemPair inFirst, final SystemPair inSecond) {
+			if (inFirst.count != inSecond.count) {
+				return (inFirst.count < inSecond.count) ? -1 : 1;
+			}
+			if (inFirst.source != inSecond.source) {
+				return (inFirst.source > inSecond.source) ? -1 : 1;
+			}
+			if (inFirst.destination != inSecond.destination) {
+				return (inFirst.destination > inSecond.destination) ? -1 : 1;
+			}
+			return 0;
+		}
+	};
+
+	private static final class SystemPair {
+		private final long source;
+		private final long destination;
+		private int count;
+
+		private SystemPair(final long inSource, final long inDestination) {
+			source = inSource;
+			destination = inDestination;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (source ^ (source >>> 32)) * 31 + (int) (destination ^ (destination >>> 32));
+		}
+
+		@Override
+		public boolean equals(final Object inObject) {
+			if (inObject instanceof SystemPair) {
+				final SystemPair other = (SystemPair) inObject;
+				return (source == other.source) && (destination == other.destination);
+			}
+			return false;
+		}
 	}
 }
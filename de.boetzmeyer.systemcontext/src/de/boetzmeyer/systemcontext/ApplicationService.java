@@ -1,5 +1,6 @@
 package de.boetzmeyer.systemcontext;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -37,12 +38,24 @@ public interface ApplicationService {
 
 	ApplicationConfig addApp(ApplicationConfig inApp);
 
+	BulkResult<ApplicationConfig> addApps(Collection<ApplicationConfig> inApps);
+
 	List<ApplicationConfig> getSystemApplications(String inSystemName);
 
 	ApplicationConfig getApplication(String inSystemName, String inApplicationName);
 
+	/**
+	 * The root configuration item of the application, or null if the
+	 * application has no items or their parent links form a cycle.
+	 */
 	ConfigurationItem findRootItem(ApplicationConfig inApp);
 
+	/**
+	 * Resolves the root configuration item of the application and reports a
+	 * cycle in the parent links of its items.
+	 */
+	ConfigurationRoot resolveRootItem(ApplicationConfig inApp);
+
 	Map<String, String> getAppConfiguration(ApplicationConfig inApp);
 
 	Map<String, String> getConfigurations(ConfigurationItem inConfigurationItem);
@@ -94,8 +107,34 @@ public interface ApplicationService {
 
 	SystemModel getAppDependencies(ApplicationConfig deliveryApp);
 
+	SystemModel getAppDependents(ApplicationConfig inApp);
+
+	SystemModel getAppDependents(ApplicationConfig inApp, int inMaxDepth);
+
+	ComponentAnalysis analyseAppDependencies();
+
+	int getHopCount(ApplicationConfig inSource, ApplicationConfig inDestination);
+
+	List<ApplicationConfig> getShortestPath(ApplicationConfig inSource, ApplicationConfig inDestination);
+
 	void configureApp(ApplicationConfig customerApp, Map<String, String> inItems);
 
 	String getConfigurationValue(ApplicationConfig customerApp, String inKey);
 
+	ConfigurationItem findConfigurationItem(ApplicationConfig inApp, String inKey);
+
+	/**
+	 * Drops the cached configuration of the application. Call it after
+	 * configuration items or configuration item links of the application were
+	 * saved past the context.
+	 */
+	void invalidateConfiguration(ApplicationConfig inApp);
+
+	/**
+	 * Sets the value of an existing configuration item only if its server
+	 * replication version is still inExpectedVersion. The version is checked
+	 * against the writers of this JVM only; neither server checks it on save.
+	 */
+	UpdateResult<ConfigurationItem> compareAndSetConfigurationValue(ApplicationConfig inApp, String inKey, String inValue, long inExpectedVersion);
+
 }
@@ -1,17 +1,18 @@
 package de.boetzmeyer.systemcontext;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import de.boetzmeyer.systemmodel.ApplicationConfig;
 import de.boetzmeyer.systemmodel.ApplicationInstallation;
 import de.boetzmeyer.systemmodel.ApplicationInterface;
 import de.boetzmeyer.systemmodel.ApplicationLink;
 import de.boetzmeyer.systemmodel.ApplicationType;
+import de.boetzmeyer.systemmodel.Attribute;
 import de.boetzmeyer.systemmodel.Computer;
 import de.boetzmeyer.systemmodel.ConfigurationItem;
 import de.boetzmeyer.systemmodel.ConfigurationItemLink;
@@ -24,10 +25,10 @@ import de.boetzmeyer.systemmodel.SystemConfig;
 import de.boetzmeyer.systemmodel.SystemModel;
 
 final class ApplicationServiceImpl extends SystemContextService implements ApplicationService {
-	private static final int MAX_DEPTH = 100;
+	private static final int UNLIMITED_DEPTH = -1;
 
-	public ApplicationServiceImpl(final IServer inSystemAccess) {
-		super(inSystemAccess);
+	public ApplicationServiceImpl(final IServer inSystemAccess, final ContextIndex inIndex) {
+		super(inSystemAccess, inIndex);
 	}
 
 	@Override
@@ -35,7 +36,7 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 		if ((inApplicationType != null) && inApplicationType.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addApplicationType(inApplicationType);
-			model.save();
+			index.save(model);
 			return inApplicationType;
 		}
 		return null;
@@ -58,7 +59,11 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 						appLink.setDestination(targetApp.getPrimaryKey());
 						final SystemModel model = SystemModel.createEmpty();
 						model.addApplicationLink(appLink);
-						model.save();
+						if (index.save(model)) {
+							index.getAppLinks().add(appLink);
+							index.getAppDependencies().invalidate(sourceApp.getPrimaryKey());
+							index.getTopology().invalidate(TopologyIndex.APP_LINKS);
+						}
 					}
 					return appLink;
 				}
@@ -72,7 +77,13 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 		if ((inSourceApp != null) && inSourceApp.isValid() && (inTargetApp != null) && inTargetApp.isValid()) {
 			ApplicationLink appLink = findAppLink(inSourceApp, inTargetApp);
 			if (appLink != null) {
-				return systemAccess.deleteApplicationLink(appLink.getPrimaryKey());
+				if (systemAccess.deleteApplicationLink(appLink.getPrimaryKey())) {
+					index.getAppLinks().remove(appLink);
+					index.getAppDependencies().invalidate(appLink.getSource());
+					index.getTopology().invalidate(TopologyIndex.APP_LINKS);
+					return true;
+				}
+				return false;
 			}
 		}
 		return true;
@@ -80,14 +91,8 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 
 	@Override
 	public ApplicationLink findAppLink(ApplicationConfig inSourceApplication, ApplicationConfig inTargetApplication) {
-		final List<ApplicationLink> targetApps = systemAccess
-				.referencesApplicationLinkBySource(inSourceApplication.getPrimaryKey());
-		for (ApplicationLink appLink : targetApps) {
-			if (appLink != null) {
-				if (appLink.getDestination() == inTargetApplication.getPrimaryKey()) {
-					return appLink;
-				}
-			}
+		if ((inSourceApplication != null) && (inTargetApplication != null)) {
+			return index.getAppLinks().find(inSourceApplication.getPrimaryKey(), inTargetApplication.getPrimaryKey());
 		}
 		return null;
 	}
@@ -97,7 +102,7 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 		if ((inInterfaceMethod != null) && inInterfaceMethod.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addInterfaceMethod(inInterfaceMethod);
-			model.save();
+			index.save(model);
 			return inInterfaceMethod;
 		}
 		return null;
@@ -108,7 +113,7 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 		if ((inInterfaceDataType != null) && inInterfaceDataType.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addInterfaceDataType(inInterfaceDataType);
-			model.save();
+			index.save(model);
 			return inInterfaceDataType;
 		}
 		return null;
@@ -119,7 +124,7 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 		if ((inInterfaceMethodParameter != null) && inInterfaceMethodParameter.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addInterfaceMethodParameter(inInterfaceMethodParameter);
-			model.save();
+			index.save(model);
 			return inInterfaceMethodParameter;
 		}
 		return null;
@@ -130,7 +135,7 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 		if ((inAppInterface != null) && inAppInterface.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addApplicationInterface(inAppInterface);
-			model.save();
+			index.save(model);
 			return inAppInterface;
 		}
 		return null;
@@ -141,12 +146,45 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 		if ((inApp != null) && inApp.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addApplicationConfig(inApp);
-			model.save();
+			if (index.save(model)) {
+				index.getAppsByName().add(inApp);
+				index.getAppDependencies().addApp(inApp);
+				index.getTopology().invalidate(TopologyIndex.APPS);
+			}
 			return inApp;
 		}
 		return null;
 	}
 
+	@Override
+	public BulkResult<ApplicationConfig> addApps(final Collection<ApplicationConfig> inApps) {
+		return new BulkInsert<ApplicationConfig>(index) {
+			@Override
+			protected boolean isValid(final ApplicationConfig inApp) {
+				return inApp.isValid();
+			}
+
+			@Override
+			protected String getErrorDescription(final ApplicationConfig inApp) {
+				return inApp.getErrorDescription();
+			}
+
+			@Override
+			protected boolean add(final SystemModel inModel, final ApplicationConfig inApp) {
+				return inModel.addApplicationConfig(inApp);
+			}
+
+			@Override
+			protected void added(final List<ApplicationConfig> inAddedApps) {
+				for (ApplicationConfig app : inAddedApps) {
+					index.getAppsByName().add(app);
+					index.getAppDependencies().addApp(app);
+				}
+				index.getTopology().invalidate(TopologyIndex.APPS);
+			}
+		}.insert(inApps);
+	}
+
 	@Override
 	public List<ApplicationConfig> getSystemApplications(String inSystemName) {
 		final SystemConfig systemX = getSystemByName(inSystemName);
@@ -159,113 +197,70 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 	@Override
 	public ApplicationConfig getApplication(String inSystemName, String inApplicationName) {
 		final SystemConfig systemX = getSystemByName(inSystemName);
-		if (systemX != null) {
-			final List<ApplicationConfig> applications = systemAccess
-					.referencesApplicationConfigBySystemConfig(systemX.getPrimaryKey());
-			for (ApplicationConfig applicationConfig : applications) {
-				if (inApplicationName.equalsIgnoreCase(applicationConfig.getApplicationName())) {
-					return applicationConfig;
-				}
+		if ((systemX != null) && (inApplicationName != null)) {
+			final ApplicationConfig app = findApplication(systemX, inApplicationName, systemAccess.listApplicationConfig(Query.create()
+					.references(Attribute.APPLICATIONCONFIG_SYSTEMCONFIG, systemX.getPrimaryKey())
+					.named(Attribute.APPLICATIONCONFIG_APPLICATIONNAME, inApplicationName).toConditions()));
+			if (app != null) {
+				return app;
 			}
+			// the database may compare names case-sensitively
+			return findApplication(systemX, inApplicationName, systemAccess.referencesApplicationConfigBySystemConfig(systemX.getPrimaryKey()));
 		}
 		return null;
 	}
 
-	private SystemConfig getSystemByName(String inSystemName) {
-		final List<SystemConfig> configs = systemAccess.listSystemConfig();
-		for (SystemConfig systemConfig : configs) {
-			if (inSystemName.equalsIgnoreCase(systemConfig.getSystemName())) {
-				return systemConfig;
+	private static ApplicationConfig findApplication(final SystemConfig inSystem, final String inApplicationName, final List<ApplicationConfig> inApplications) {
+		for (ApplicationConfig applicationConfig : inApplications) {
+			if ((applicationConfig != null) && (applicationConfig.getSystemConfig() == inSystem.getPrimaryKey())
+					&& inApplicationName.equalsIgnoreCase(applicationConfig.getApplicationName())) {
+				return applicationConfig;
 			}
 		}
 		return null;
 	}
 
+	private SystemConfig getSystemByName(String inSystemName) {
+		return index.getSystemsByName().find(inSystemName);
+	}
+
 	@Override
 	public ConfigurationItem findRootItem(ApplicationConfig inApp) {
-		ConfigurationItem root = null;
+		return resolveRootItem(inApp).getItem();
+	}
+
+	@Override
+	public ConfigurationRoot resolveRootItem(ApplicationConfig inApp) {
 		if (inApp != null) {
-			final List<ConfigurationItem> items = systemAccess
-					.referencesConfigurationItemByApplicationConfig(inApp.getPrimaryKey());
-			if (items.size() > 0) {
-				final AtomicInteger recursionCounter = new AtomicInteger(0);
-				ConfigurationItem item = items.get(0);
-				while (item != null) {
-					root = item;
-					recursionCounter.incrementAndGet();
-					if (recursionCounter.get() >= MAX_DEPTH) {
-						break;
-					}
-					final List<ConfigurationItemLink> inputLinks = systemAccess
-							.referencesConfigurationItemLinkByDestination(item.getPrimaryKey());
-					if (inputLinks.size() > 0) {
-						final ConfigurationItemLink link = inputLinks.get(0);
-						if (link != null) {
-							item = link.getSourceRef();
-						}
-					}
-				}
-			}
+			return index.getAppConfigurations().getTree(inApp.getPrimaryKey()).getRoot();
 		}
-		return root;
+		return ConfigurationRoot.noItems();
 	}
 
 	@Override
 	public Map<String, String> getAppConfiguration(ApplicationConfig inApp) {
-		final ConfigurationItem rootItem = findRootItem(inApp);
-		return getConfigurations(rootItem);
+		if (inApp != null) {
+			final ConfigurationTree tree = index.getAppConfigurations().getTree(inApp.getPrimaryKey());
+			if (tree.getRoot().isFound()) {
+				return tree.getConfigurations(tree.getRoot().getItem().getPrimaryKey());
+			}
+		}
+		return new HashMap<String, String>();
 	}
 
 	@Override
 	public Map<String, String> getConfigurations(ConfigurationItem inConfigurationItem) {
-		Map<String, String> config = new HashMap<String, String>();
-		final String rootPathKey = getRootPathKey(inConfigurationItem);
-		addItem(config, inConfigurationItem, rootPathKey);
-		return config;
-	}
-
-	private String getRootPathKey(final ConfigurationItem inConfigurationItem) {
 		if (inConfigurationItem != null) {
-			final StringBuilder path = new StringBuilder();
-			addPath(path, inConfigurationItem);
+			final ConfigurationTree tree = index.getAppConfigurations().getTree(inConfigurationItem.getApplicationConfig());
+			return tree.getConfigurations(inConfigurationItem.getPrimaryKey());
 		}
-		return null;
+		return new HashMap<String, String>();
 	}
 
-	private void addPath(final StringBuilder inPath, final ConfigurationItem inConfigurationItem) {
-		if (inConfigurationItem != null) {
-			inPath.insert(0, String.format("%s.", inConfigurationItem.getItemKey()));
-			final List<ConfigurationItemLink> parentLinks = systemAccess
-					.referencesConfigurationItemLinkByDestination(inConfigurationItem.getPrimaryKey());
-			if (parentLinks.size() >= 1) {
-				for (ConfigurationItemLink configurationItemLink : parentLinks) {
-					final ConfigurationItem parent = configurationItemLink.getSourceRef();
-					if (parent != null) {
-						addPath(inPath, parent);
-					}
-				}
-			}
-		}
-	}
-
-	private void addItem(final Map<String, String> inConfig, final ConfigurationItem inConfigurationItem,
-			final String inPathKey) {
-		if (inConfigurationItem != null) {
-			final String newPathKey;
-			if (inPathKey == null) {
-				newPathKey = inConfigurationItem.getItemKey();
-			} else {
-				newPathKey = String.format("%s.%s", inPathKey, inConfigurationItem.getItemKey());
-			}
-			inConfig.put(newPathKey, inConfigurationItem.getItemValue());
-			final List<ConfigurationItemLink> childLinks = systemAccess
-					.referencesConfigurationItemLinkBySource(inConfigurationItem.getPrimaryKey());
-			for (ConfigurationItemLink configurationItemLink : childLinks) {
-				final ConfigurationItem child = configurationItemLink.getDestinationRef();
-				if (child != null) {
-					addItem(inConfig, child, newPathKey);
-				}
-			}
+	@Override
+	public void invalidateConfiguration(ApplicationConfig inApp) {
+		if (inApp != null) {
+			index.getAppConfigurations().invalidate(inApp.getPrimaryKey());
 		}
 	}
 
@@ -294,14 +289,14 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 	@Override
 	public ApplicationInterface addAppInterface(ApplicationConfig inApplicationConfig, String inInterfaceName) {
 		if (inApplicationConfig != null) {
-			final ApplicationConfig app = systemAccess.findByIDApplicationConfig(inApplicationConfig.getPrimaryKey());
+			final ApplicationConfig app = index.getAppCache().get(inApplicationConfig.getPrimaryKey());
 			if (app != null) {
 				final SystemModel model = SystemModel.createEmpty();
 				final ApplicationInterface appInterface = ApplicationInterface.generate();
 				appInterface.setApplicationConfig(app.getPrimaryKey());
 				appInterface.setInterfaceName(inInterfaceName);
 				model.addApplicationInterface(appInterface);
-				model.save();
+				index.save(model);
 				return appInterface;
 			}
 		}
@@ -337,7 +332,7 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 				if (inReturnType != null) {
 					interfaceMethod.setReturnType(inReturnType.getPrimaryKey());
 				}
-				model.save();
+				index.save(model);
 			}
 		}
 		return interfaceMethod;
@@ -382,7 +377,7 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 	public SystemModel getAppConfigurationModel(ApplicationConfig inApp) {
 		final SystemModel systemModel = SystemModel.createEmpty();
 		if (inApp != null) {
-			final ApplicationConfig app = systemAccess.findByIDApplicationConfig(inApp.getPrimaryKey());
+			final ApplicationConfig app = index.getAppCache().get(inApp.getPrimaryKey());
 			if (app != null) {
 				systemModel.addApplicationConfig(app);
 				final List<ConfigurationItem> configurationItems = systemAccess
@@ -488,13 +483,7 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 
 	@Override
 	public ApplicationConfig findAppByName(String inApplicationName) {
-		final List<ApplicationConfig> apps = systemAccess.listApplicationConfig();
-		for (ApplicationConfig app : apps) {
-			if (inApplicationName.equalsIgnoreCase(app.getApplicationName())) {
-				return app;
-			}
-		}
-		return null;
+		return index.getAppsByName().find(inApplicationName);
 	}
 
 	@Override
@@ -528,60 +517,164 @@ final class ApplicationServiceImpl extends SystemContextService implements Appli
 
 	@Override
 	public SystemModel getAppDependencies(ApplicationConfig inApp) {
-		final SystemModel dependencyGraph = SystemModel.createEmpty();
 		if (inApp != null) {
-			final ApplicationConfig rootApp = systemAccess.findByIDApplicationConfig(inApp.getPrimaryKey());
-			addToGraph(rootApp, dependencyGraph);
+			return index.getAppDependencies().export(inApp.getPrimaryKey());
 		}
-		return dependencyGraph;
+		return SystemModel.createEmpty();
 	}
 
-	private void addToGraph(final ApplicationConfig inApp, final SystemModel dependencyGraph) {
+	@Override
+	public SystemModel getAppDependents(ApplicationConfig inApp) {
+		return getAppDependents(inApp, UNLIMITED_DEPTH);
+	}
+
+	@Override
+	public SystemModel getAppDependents(ApplicationConfig inApp, int inMaxDepth) {
+		final SystemModel dependents = SystemModel.createEmpty();
 		if (inApp != null) {
-			dependencyGraph.addApplicationConfig(inApp);
-			final List<ApplicationLink> requiredAppLinks = systemAccess.referencesApplicationLinkBySource(inApp.getPrimaryKey());
-			for (ApplicationLink applicationLink : requiredAppLinks) {
-				dependencyGraph.addApplicationLink(applicationLink);
-				addToGraph(applicationLink.getDestinationRef(), dependencyGraph);
+			final ApplicationConfig app = findApp(inApp.getPrimaryKey());
+			if (app != null) {
+				dependents.addApplicationConfig(app);
+				final List<ApplicationLink> appLinks = index.getAppLinks().getIncomingClosure(app.getPrimaryKey(), inMaxDepth);
+				for (ApplicationLink appLink : appLinks) {
+					dependents.addApplicationLink(appLink);
+					final ApplicationConfig dependentApp = findApp(appLink.getSource());
+					if (dependentApp != null) {
+						dependents.addApplicationConfig(dependentApp);
+					}
+				}
 			}
 		}
+		return dependents;
+	}
+
+	@Override
+	public ComponentAnalysis analyseAppDependencies() {
+		final ComponentAnalyser analyser = new ComponentAnalyser();
+		for (ApplicationConfig app : systemAccess.listApplicationConfig()) {
+			if (app != null) {
+				analyser.addNode(app.getPrimaryKey());
+			}
+		}
+		for (ApplicationLink appLink : index.getAppLinks().getLinks()) {
+			analyser.addLink(appLink.getSource(), appLink.getDestination());
+		}
+		return analyser.analyse();
+	}
+
+	@Override
+	public int getHopCount(ApplicationConfig inSource, ApplicationConfig inDestination) {
+		if ((inSource != null) && (inDestination != null)) {
+			return index.getAppLinks().getGraph().getDistance(inSource.getPrimaryKey(), inDestination.getPrimaryKey());
+		}
+		return -1;
+	}
+
+	@Override
+	public List<ApplicationConfig> getShortestPath(ApplicationConfig inSource, ApplicationConfig inDestination) {
+		final List<ApplicationConfig> apps = new ArrayList<ApplicationConfig>();
+		if ((inSource != null) && (inDestination != null)) {
+			final List<Long> path = index.getAppLinks().getGraph().getShortestPath(inSource.getPrimaryKey(), inDestination.getPrimaryKey());
+			for (Long appKey : path) {
+				final ApplicationConfig app = findApp(appKey);
+				if (app != null) {
+					apps.add(app);
+				}
+			}
+		}
+		return apps;
+	}
+
+	private ApplicationConfig findApp(final long inApp) {
+		final ApplicationConfig app = index.getAppsByName().get(inApp);
+		if (app != null) {
+			return app;
+		}
+		return index.getAppCache().get(inApp);
 	}
 
 	@Override
 	public void configureApp(final ApplicationConfig inApp, Map<String, String> inItems) {
 		if (inApp != null) {
-			final ApplicationConfig foundApp = systemAccess.findByIDApplicationConfig(inApp.getPrimaryKey());
+			final ApplicationConfig foundApp = index.getAppCache().get(inApp.getPrimaryKey());
 			if (foundApp != null) {
-				final SystemModel model = SystemModel.createEmpty();
-				for (Entry<String, String> entry : inItems.entrySet()) {
-					if (entry != null) {
-						final ConfigurationItem item = ConfigurationItem.generate();
-						item.setApplicationConfig(foundApp.getPrimaryKey());
-						item.setItemKey(entry.getKey());
-						item.setItemValue(entry.getValue());
-						model.addConfigurationItem(item);
+				synchronized (index.getVersionLocks().getLock(foundApp.getPrimaryKey())) {
+					final SystemModel model = SystemModel.createEmpty();
+					for (Entry<String, String> entry : inItems.entrySet()) {
+						if (entry != null) {
+							final ConfigurationItem item = configure(foundApp.getPrimaryKey(), entry.getKey());
+							item.setItemValue(entry.getValue());
+							model.addConfigurationItem(item);
+						}
+					}
+					if (model.sizeConfigurationItem() == inItems.size()) {
+						index.save(model);
+						index.getAppConfigurations().invalidate(foundApp.getPrimaryKey());
 					}
-				}
-				if (model.sizeConfigurationItem() == inItems.size()) {
-					model.save();
 				}
 			}
 		}
 	}
 
+	/**
+	 * A copy of the saved item of the key, or a new item if the application
+	 * has none, so a key is configured once and configuring it again changes
+	 * its value.
+	 */
+	private ConfigurationItem configure(final long inApp, final String inKey) {
+		final ConfigurationItem savedItem = (inKey != null) ? index.getAppConfigurations().getItem(inApp, inKey) : null;
+		if (savedItem != null) {
+			return savedItem.copy();
+		}
+		final ConfigurationItem item = ConfigurationItem.generate();
+		item.setApplicationConfig(inApp);
+		item.setItemKey(inKey);
+		return item;
+	}
+
 	@Override
-	public String getConfigurationValue(ApplicationConfig inApp, String inKey) {
+	public ConfigurationItem findConfigurationItem(final ApplicationConfig inApp, final String inKey) {
 		if ((inApp != null) && (inKey != null)) {
-			final List<ConfigurationItem> appConfigItems = systemAccess.referencesConfigurationItemByApplicationConfig(inApp.getPrimaryKey());
-			for (ConfigurationItem configurationItem : appConfigItems) {
-				if (configurationItem != null) {
-					if (inKey.equals(configurationItem.getItemKey())) {
-						return configurationItem.getItemValue();
-					}
-				}
+			final ConfigurationItem item = index.getAppConfigurations().getItem(inApp.getPrimaryKey(), inKey);
+			if (item != null) {
+				return item.copy();
 			}
 		}
 		return null;
 	}
 
+	@Override
+	public UpdateResult<ConfigurationItem> compareAndSetConfigurationValue(final ApplicationConfig inApp, final String inKey, final String inValue,
+			final long inExpectedVersion) {
+		final ConfigurationItem item = findConfigurationItem(inApp, inKey);
+		if (item != null) {
+			return index.getVersionLocks().compareAndSet(inApp.getPrimaryKey(), item.getPrimaryKey(), inExpectedVersion, new VersionLocks.Change<ConfigurationItem>() {
+				@Override
+				protected ConfigurationItem load(final long inPrimaryKey) {
+					final ConfigurationItem foundItem = systemAccess.findByIDConfigurationItem(inPrimaryKey);
+					return (foundItem != null) ? foundItem.copy() : null;
+				}
+
+				@Override
+				protected void apply(final ConfigurationItem inItem) {
+					inItem.setItemValue(inValue);
+				}
+
+				@Override
+				protected void saved(final ConfigurationItem inItem) {
+					index.getAppConfigurations().invalidate(inItem.getApplicationConfig());
+				}
+			});
+		}
+		return UpdateResult.notFound();
+	}
+
+	@Override
+	public String getConfigurationValue(ApplicationConfig inApp, String inKey) {
+		if ((inApp != null) && (inKey != null)) {
+			return index.getAppConfigurations().getValue(inApp.getPrimaryKey(), inKey);
+		}
+		return null;
+	}
+
 }
@@ -0,0 +1,158 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs operations on the system context without blocking the caller. Every
+ * operation is executed on the given executor, or on an own pool of
+ * inMaxConcurrency daemon threads. Submitted operations wait in a queue, and
+ * at most inMaxConcurrency of them are handed to the executor at the same
+ * time, so a large fan-out neither parks threads nor floods the server.
+ * Operations that change the context are submitted with submitWrite and run
+ * one after the other.
+ */
+public final class AsyncSystemContext {
+	private final ISystemContext context;
+	private final ExecutorService executor;
+	private final boolean ownExecutor;
+	private final Lane reads;
+	private final Lane writes;
+
+	public AsyncSystemContext(final ISystemContext inContext, final int inMaxConcurrency) {
+		this(inContext, Executors.newFixedThreadPool(Math.max(1, inMaxConcurrency), new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable inRunnable) {
+				final Thread thread = new Thread(inRunnable, "AsyncSystemContext");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}), true, inMaxConcurrency);
+	}
+
+	public AsyncSystemContext(final ISystemContext inContext, final ExecutorService inExecutor, final int inMaxConcurrency) {
+		this(inContext, inExecutor, false, inMaxConcurrency);
+	}
+
+	private AsyncSystemContext(final ISystemContext inContext, final ExecutorService inExecutor, final boolean inOwnExecutor, final int inMaxConcurrency) {
+		if ((inContext == null) || (inExecutor == null)) {
+			throw new IllegalArgumentException("The context and the executor must not be null.");
+		}
+		context = inContext;
+		executor = inExecutor;
+		ownExecutor = inOwnExecutor;
+		reads = new Lane(inExecutor, Math.max(1, inMaxConcurrency));
+		writes = new Lane(inExecutor, 1);
+	}
+
+	public <T> Future<T> submit(final Operation<T> inOperation) {
+		return reads.submit(task(inOperation));
+	}
+
+	public <T> List<Future<T>> submitAll(final List<? extends Operation<T>> inOperations) {
+		final List<Future<T>> futures = new ArrayList<Future<T>>(inOperations.size());
+		for (Operation<T> operation : inOperations) {
+			futures.add(submit(operation));
+		}
+		return futures;
+	}
+
+	/**
+	 * Submits an operation that changes the context. Write operations run one
+	 * at a time, in the order they were submitted.
+	 */
+	public <T> Future<T> submitWrite(final Operation<T> inOperation) {
+		return writes.submit(task(inOperation));
+	}
+
+	/**
+	 * Shuts the own thread pool down after the submitted operations. A given
+	 * executor is left to its owner.
+	 */
+	public void shutdown() {
+		if (ownExecutor) {
+			executor.shutdown();
+		}
+	}
+
+	private <T> FutureTask<T> task(final Operation<T> inOperation) {
+		return new FutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				return inOperation.execute(context);
+			}
+		});
+	}
+
+	/**
+	 * A queue of tasks drained by at most maxRunning runners on the
+	 * executor. A runner takes tasks until the queue is empty, so no thread
+	 * waits for a permit.
+	 */
+	private static final class Lane {
+		private final Executor executor;
+		private final int maxRunning;
+		private final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+		private int running;
+
+		private Lane(final Executor inExecutor, final int inMaxRunning) {
+			executor = inExecutor;
+			maxRunning = inMaxRunning;
+		}
+
+		private <T> Future<T> submit(final FutureTask<T> inTask) {
+			synchronized (this) {
+				tasks.add(inTask);
+				if (running >= maxRunning) {
+					return inTask;
+				}
+				running++;
+			}
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						drain();
+					}
+				});
+			} catch (RuntimeException e) {
+				synchronized (this) {
+					running--;
+					tasks.remove(inTask);
+				}
+				throw e;
+			}
+			return inTask;
+		}
+
+		private void drain() {
+			while (true) {
+				final Runnable task;
+				synchronized (this) {
+					task = tasks.poll();
+					if (task == null) {
+						running--;
+						return;
+					}
+				}
+				task.run();
+			}
+		}
+	}
+
+	/**
+	 * One call, or a sequence of calls, on the system context.
+	 */
+	public interface Operation<T> {
+		T execute(ISystemContext inContext) throws Exception;
+	}
+}
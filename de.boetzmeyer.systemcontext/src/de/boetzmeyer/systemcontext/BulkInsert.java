@@ -0,0 +1,78 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.boetzmeyer.systemcontext.BulkResult.Rejection;
+import de.boetzmeyer.systemmodel.IRecordable;
+import de.boetzmeyer.systemmodel.SystemModel;
+
+/**
+ * Validates a collection of records of one type and saves the valid ones
+ * with a single SystemModel save. Subclasses bind the record type to its
+ * validation and to its SystemModel table.
+ */
+abstract class BulkInsert<T extends IRecordable> {
+	static final String NULL_RECORD = "Record is null";
+	static final String DUPLICATE_KEY = "Duplicate primary key";
+	static final String NOT_ADDED = "Record could not be added to the model";
+	static final String NOT_SAVED = "Save failed";
+
+	private final ContextIndex index;
+
+	protected BulkInsert(final ContextIndex inIndex) {
+		index = inIndex;
+	}
+
+	protected abstract boolean isValid(T inRecord);
+
+	protected abstract String getErrorDescription(T inRecord);
+
+	protected abstract boolean add(SystemModel inModel, T inRecord);
+
+	/**
+	 * Called once after a successful save, to update the indexes.
+	 */
+	protected void added(final List<T> inRecords) {
+	}
+
+	public final BulkResult<T> insert(final Collection<? extends T> inRecords) {
+		final List<T> added = new ArrayList<T>();
+		final List<Rejection<T>> rejections = new ArrayList<Rejection<T>>();
+		if (inRecords != null) {
+			final SystemModel model = SystemModel.createEmpty();
+			final List<Integer> positions = new ArrayList<Integer>();
+			final Set<Long> keys = new HashSet<Long>();
+			int position = 0;
+			for (T record : inRecords) {
+				if (record == null) {
+					rejections.add(new Rejection<T>(position, record, NULL_RECORD));
+				} else if (!isValid(record)) {
+					rejections.add(new Rejection<T>(position, record, getErrorDescription(record)));
+				} else if (!keys.add(record.getPrimaryKey())) {
+					rejections.add(new Rejection<T>(position, record, DUPLICATE_KEY));
+				} else if (!add(model, record)) {
+					rejections.add(new Rejection<T>(position, record, NOT_ADDED));
+				} else {
+					added.add(record);
+					positions.add(position);
+				}
+				position++;
+			}
+			if (!added.isEmpty()) {
+				if (index.save(model)) {
+					added(added);
+				} else {
+					for (int i = 0; i < added.size(); i++) {
+						rejections.add(new Rejection<T>(positions.get(i), added.get(i), NOT_SAVED));
+					}
+					added.clear();
+				}
+			}
+		}
+		return new BulkResult<T>(added, rejections);
+	}
+}
@@ -0,0 +1,57 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk add: the records that were saved and, for every record
+ * that was not, its position in the input and the reason.
+ */
+public final class BulkResult<T> {
+	private final List<T> added;
+	private final List<Rejection<T>> rejections;
+
+	BulkResult(final List<T> inAdded, final List<Rejection<T>> inRejections) {
+		added = Collections.unmodifiableList(inAdded);
+		rejections = Collections.unmodifiableList(inRejections);
+	}
+
+	public List<T> getAdded() {
+		return added;
+	}
+
+	public List<Rejection<T>> getRejections() {
+		return rejections;
+	}
+
+	public boolean isComplete() {
+		return rejections.isEmpty();
+	}
+
+	public static final class Rejection<T> {
+		private final int position;
+		private final T item;
+		private final String reason;
+
+		Rejection(final int inPosition, final T inItem, final String inReason) {
+			position = inPosition;
+			item = inItem;
+			reason = inReason;
+		}
+
+		/**
+		 * The position of the record in the collection passed to the bulk add.
+		 */
+		public int getPosition() {
+			return position;
+		}
+
+		public T getItem() {
+			return item;
+		}
+
+		public String getReason() {
+			return reason;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import de.boetzmeyer.systemmodel.ApplicationInstallation;
+import de.boetzmeyer.systemmodel.ApplicationSession;
+import de.boetzmeyer.systemmodel.DatabaseInstallation;
+import de.boetzmeyer.systemmodel.DatabaseSession;
+import de.boetzmeyer.systemmodel.IServer;
+import de.boetzmeyer.systemmodel.PropertyState;
+import de.boetzmeyer.systemmodel.SessionState;
+
+/**
+ * Plans the deletion of installations and computers together with their
+ * sessions, session states and property states. The plan first collects the
+ * primary keys of all dependent records, table by table, and then deletes
+ * them table by table, children before their parents. When the parents of a
+ * table are numerous, their children are found with one scan of the child
+ * table instead of one reference query per parent. A failed delete stops the
+ * plan before any parent of the failed record is touched, so no record is
+ * left referencing a deleted one. Buffered property state updates of the
+ * deleted sessions are discarded, so a later flush does not recreate their
+ * states.
+ */
+final class CascadeDelete {
+	private static final int SCAN_THRESHOLD = 64;
+
+	private final IServer systemAccess;
+	private final ContextIndex index;
+	private final Set<Long> computers = new LinkedHashSet<Long>();
+	private final Set<Long> appInstallations = new LinkedHashSet<Long>();
+	private final Set<Long> dbInstallations = new LinkedHashSet<Long>();
+	private final Set<Long> appSessions = new LinkedHashSet<Long>();
+	private final Set<Long> dbSessions = new LinkedHashSet<Long>();
+	private final Set<Long> sessionStates = new LinkedHashSet<Long>();
+	private final Set<Long> propertyStates = new LinkedHashSet<Long>();
+
+	public CascadeDelete(final IServer inSystemAccess, final ContextIndex inIndex) {
+		systemAccess = inSystemAccess;
+		index = inIndex;
+	}
+
+	public CascadeDelete addComputer(final long inComputer) {
+		computers.add(inComputer);
+		for (ApplicationInstallation appInstallation : systemAccess.referencesApplicationInstallationByComputer(inComputer)) {
+			if (appInstallation != null) {
+				appInstallations.add(appInstallation.getPrimaryKey());
+			}
+		}
+		for (DatabaseInstallation dbInstallation : systemAccess.referencesDatabaseInstallationByComputer(inComputer)) {
+			if (dbInstallation != null) {
+				dbInstallations.add(dbInstallation.getPrimaryKey());
+			}
+		}
+		return this;
+	}
+
+	public CascadeDelete addAppInstallation(final long inAppInstallation) {
+		appInstallations.add(inAppInstallation);
+		return this;
+	}
+
+	public CascadeDelete addDatabaseInstallation(final long inDbInstallation) {
+		dbInstallations.add(inDbInstallation);
+		return this;
+	}
+
+	/**
+	 * Collects the dependent records and deletes everything. Returns false if
+	 * a delete failed; the records above it in the plan are then kept.
+	 */
+	public boolean execute() {
+		collectAppSessions();
+		final PropertyStateWriter writer = index.getPropertyStateWriter();
+		if (writer != null) {
+			writer.discard(appSessions);
+		}
+		collectDbSessions();
+		collectSessionStates();
+		collectPropertyStates();
+		final boolean deleted = deletePropertyStates() && deleteSessionStates() && deleteAppSessions() && deleteAppInstallations()
+				&& deleteDbSessions() && deleteDbInstallations() && deleteComputers();
+		if (!appInstallations.isEmpty()) {
+			index.getTopology().invalidate(TopologyIndex.INSTALLATIONS);
+		}
+		return deleted;
+	}
+
+	private void collectAppSessions() {
+		if (appInstallations.size() > SCAN_THRESHOLD) {
+			for (ApplicationSession appSession : systemAccess.listApplicationSession()) {
+				if ((appSession != null) && appInstallations.contains(appSession.getApplicationInstallation())) {
+					appSessions.add(appSession.getPrimaryKey());
+				}
+			}
+		} else {
+			for (Long appInstallation : appInstallations) {
+				for (ApplicationSession appSession : systemAccess.referencesApplicationSessionByApplicationInstallation(appInstallation)) {
+					if (appSession != null) {
+						appSessions.add(appSession.getPrimaryKey());
+					}
+				}
+			}
+		}
+	}
+
+	private void collectDbSessions() {
+		if (dbInstallations.size() > SCAN_THRESHOLD) {
+			for (DatabaseSession dbSession : systemAccess.listDatabaseSession()) {
+				if ((dbSession != null) && dbInstallations.contains(dbSession.getDatabaseInstallation())) {
+					dbSessions.add(dbSession.getPrimaryKey());
+				}
+			}
+		} else {
+			for (Long dbInstallation : dbInstallations) {
+				for (DatabaseSession dbSession : systemAccess.referencesDatabaseSessionByDatabaseInstallation(dbInstallation)) {
+					if (dbSession != null) {
+						dbSessions.add(dbSession.getPrimaryKey());
+					}
+				}
+			}
+		}
+	}
+
+	private void collectSessionStates() {
+		if (appSessions.size() > SCAN_THRESHOLD) {
+			for (SessionState sessionState : systemAccess.listSessionState()) {
+				if ((sessionState != null) && appSessions.contains(sessionState.getApplicationSession())) {
+					sessionStates.add(sessionState.getPrimaryKey());
+				}
+			}
+		} else {
+			for (Long appSession : appSessions) {
+				for (SessionState sessionState : systemAccess.referencesSessionStateByApplicationSession(appSession)) {
+					if (sessionState != null) {
+						sessionStates.add(sessionState.getPrimaryKey());
+					}
+				}
+			}
+		}
+	}
+
+	private void collectPropertyStates() {
+		if (sessionStates.size() > SCAN_THRESHOLD) {
+			for (PropertyState propertyState : systemAccess.listPropertyState()) {
+				if ((propertyState != null) && sessionStates.contains(propertyState.getSessionState())) {
+					propertyStates.add(propertyState.getPrimaryKey());
+				}
+			}
+		} else {
+			for (Long sessionState : sessionStates) {
+				for (PropertyState propertyState : systemAccess.referencesPropertyStateBySessionState(sessionState)) {
+					if (propertyState != null) {
+						propertyStates.add(propertyState.getPrimaryKey());
+					}
+				}
+			}
+		}
+	}
+
+	private boolean deletePropertyStates() {
+		for (Long propertyState : propertyStates) {
+			if (!systemAccess.deletePropertyState(propertyState)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean deleteSessionStates() {
+		for (Long sessionState : sessionStates) {
+			if (!systemAccess.deleteSessionState(sessionState)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean deleteAppSessions() {
+		for (Long appSession : appSessions) {
+			if (!systemAccess.deleteApplicationSession(appSession)) {
+				return false;
+			}
+			index.closeAppSession(appSession);
+		}
+		return true;
+	}
+
+	private boolean deleteAppInstallations() {
+		for (Long appInstallation : appInstallations) {
+			if (!systemAccess.deleteApplicationInstallation(appInstallation)) {
+				return false;
+			}
+			index.getAppInstallations().remove(appInstallation);
+			index.getAppSessions().removeInstallation(appInstallation);
+		}
+		return true;
+	}
+
+	private boolean deleteDbSessions() {
+		for (Long dbSession : dbSessions) {
+			if (!systemAccess.deleteDatabaseSession(dbSession)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean deleteDbInstallations() {
+		for (Long dbInstallation : dbInstallations) {
+			if (!systemAccess.deleteDatabaseInstallation(dbInstallation)) {
+				return false;
+			}
+			index.getDatabaseSessions().removeInstallation(dbInstallation);
+		}
+		return true;
+	}
+
+	private boolean deleteComputers() {
+		for (Long computer : computers) {
+			if (!systemAccess.deleteComputer(computer)) {
+				return false;
+			}
+			index.removeComputer(computer);
+		}
+		return true;
+	}
+}
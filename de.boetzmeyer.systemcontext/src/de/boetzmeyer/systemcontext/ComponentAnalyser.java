@@ -0,0 +1,147 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tarjan's strongly connected components over a directed link graph. The
+ * depth-first search keeps its own stack, so deep dependency chains do not
+ * overflow the thread stack, and the whole analysis runs in O(nodes + links).
+ */
+final class ComponentAnalyser {
+	private final Map<Long, Integer> idsByNode = new HashMap<Long, Integer>();
+	private final List<Long> nodes = new ArrayList<Long>();
+	private final List<int[]> links = new ArrayList<int[]>();
+
+	public ComponentAnalyser() {
+	}
+
+	public void addNode(final long inNode) {
+		getId(inNode);
+	}
+
+	public void addLink(final long inSource, final long inDestination) {
+		links.add(new int[] { getId(inSource), getId(inDestination) });
+	}
+
+	private int getId(final long inNode) {
+		Integer id = idsByNode.get(inNode);
+		if (id == null) {
+			id = nodes.size();
+			idsByNode.put(inNode, id);
+			nodes.add(inNode);
+		}
+		return id;
+	}
+
+	public ComponentAnalysis analyse() {
+		final int nodeCount = nodes.size();
+		final int[] offsets = new int[nodeCount + 1];
+		final int[] targets = new int[links.size()];
+		for (int[] link : links) {
+			offsets[link[0] + 1]++;
+		}
+		for (int node = 0; node < nodeCount; node++) {
+			offsets[node + 1] += offsets[node];
+		}
+		final int[] fill = Arrays.copyOf(offsets, nodeCount);
+		for (int[] link : links) {
+			targets[fill[link[0]]++] = link[1];
+		}
+
+		final int[] order = new int[nodeCount];
+		final int[] lowLink = new int[nodeCount];
+		final int[] componentOf = new int[nodeCount];
+		final boolean[] onStack = new boolean[nodeCount];
+		final int[] stack = new int[nodeCount];
+		final int[] callStack = new int[nodeCount];
+		final int[] nextLink = new int[nodeCount];
+		Arrays.fill(order, -1);
+		int counter = 0;
+		int stackSize = 0;
+		int componentCount = 0;
+		for (int start = 0; start < nodeCount; start++) {
+			if (order[start] != -1) {
+				continue;
+			}
+			int callDepth = 0;
+			order[start] = lowLink[start] = counter++;
+			stack[stackSize++] = start;
+			onStack[start] = true;
+			nextLink[start] = offsets[start];
+			callStack[callDepth++] = start;
+			while (callDepth > 0) {
+				final int node = callStack[callDepth - 1];
+				if (nextLink[node] < offsets[node + 1]) {
+					final int target = targets[nextLink[node]++];
+					if (order[target] == -1) {
+						order[target] = lowLink[target] = counter++;
+						stack[stackSize++] = target;
+						onStack[target] = true;
+						nextLink[target] = offsets[target];
+						callStack[callDepth++] = target;
+					} else if (onStack[target]) {
+						lowLink[node] = Math.min(lowLink[node], order[target]);
+					}
+				} else {
+					callDepth--;
+					if (callDepth > 0) {
+						final int caller = callStack[callDepth - 1];
+						lowLink[caller] = Math.min(lowLink[caller], lowLink[node]);
+					}
+					if (lowLink[node] == order[node]) {
+						int member;
+						do {
+							member = stack[--stackSize];
+							onStack[member] = false;
+							componentOf[member] = componentCount;
+						} while (member != node);
+						componentCount++;
+					}
+				}
+			}
+		}
+
+		// Tarjan completes a component only after every component it reaches,
+		// so the dependencies of a component always have smaller numbers
+		final List<List<Long>> components = new ArrayList<List<Long>>(componentCount);
+		for (int component = 0; component < componentCount; component++) {
+			components.add(new ArrayList<Long>(1));
+		}
+		for (int node = 0; node < nodeCount; node++) {
+			components.get(componentOf[node]).add(nodes.get(node));
+		}
+		final boolean[] cyclic = new boolean[componentCount];
+		final int[] levels = new int[componentCount];
+		final int[] componentStart = new int[componentCount + 1];
+		for (int node = 0; node < nodeCount; node++) {
+			componentStart[componentOf[node] + 1]++;
+		}
+		for (int component = 0; component < componentCount; component++) {
+			componentStart[component + 1] += componentStart[component];
+			cyclic[component] = components.get(component).size() > 1;
+		}
+		final int[] nodesByComponent = new int[nodeCount];
+		final int[] position = Arrays.copyOf(componentStart, componentCount);
+		for (int node = 0; node < nodeCount; node++) {
+			nodesByComponent[position[componentOf[node]]++] = node;
+		}
+		for (int component = 0; component < componentCount; component++) {
+			for (int i = componentStart[component]; i < componentStart[component + 1]; i++) {
+				final int node = nodesByComponent[i];
+				for (int link = offsets[node]; link < offsets[node + 1]; link++) {
+					final int targetComponent = componentOf[targets[link]];
+					if (targetComponent == component) {
+						cyclic[component] = true;
+					} else {
+						levels[component] = Math.max(levels[component], levels[targetComponent] + 1);
+					}
+				}
+			}
+		}
+		return new ComponentAnalysis(components, cyclic, levels);
+	}
+}
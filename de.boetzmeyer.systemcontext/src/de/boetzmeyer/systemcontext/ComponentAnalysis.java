@@ -0,0 +1,89 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strongly connected components of a link graph. Components are ordered so
+ * that every component comes after the components it depends on. Level 0
+ * holds the components without dependencies, level n the components whose
+ * longest dependency chain through the condensed graph has n links.
+ */
+public final class ComponentAnalysis {
+	private final List<List<Long>> components;
+	private final List<List<Long>> cycles;
+	private final List<List<Long>> levels;
+	private final Map<Long, Integer> levelsByNode;
+
+	ComponentAnalysis(final List<List<Long>> inComponents, final boolean[] inCyclic, final int[] inLevels) {
+		components = new ArrayList<List<Long>>(inComponents.size());
+		cycles = new ArrayList<List<Long>>();
+		levels = new ArrayList<List<Long>>();
+		levelsByNode = new HashMap<Long, Integer>();
+		for (int component = 0; component < inComponents.size(); component++) {
+			final List<Long> nodes = Collections.unmodifiableList(inComponents.get(component));
+			components.add(nodes);
+			if (inCyclic[component]) {
+				cycles.add(nodes);
+			}
+			final int level = inLevels[component];
+			while (levels.size() <= level) {
+				levels.add(new ArrayList<Long>());
+			}
+			levels.get(level).addAll(nodes);
+			for (Long node : nodes) {
+				levelsByNode.put(node, level);
+			}
+		}
+	}
+
+	public List<List<Long>> getComponents() {
+		return Collections.unmodifiableList(components);
+	}
+
+	/**
+	 * The components that contain a dependency cycle, i.e. more than one node
+	 * or a node linked to itself.
+	 */
+	public List<List<Long>> getCycles() {
+		return Collections.unmodifiableList(cycles);
+	}
+
+	public boolean hasCycles() {
+		return !cycles.isEmpty();
+	}
+
+	/**
+	 * The nodes grouped by the level of their component.
+	 */
+	public List<List<Long>> getLevels() {
+		final List<List<Long>> result = new ArrayList<List<Long>>(levels.size());
+		for (List<Long> level : levels) {
+			result.add(Collections.unmodifiableList(level));
+		}
+		return result;
+	}
+
+	/**
+	 * The level of the component of the node, or -1 if the node is unknown.
+	 */
+	public int getLevel(final long inNode) {
+		final Integer level = levelsByNode.get(inNode);
+		return (level != null) ? level.intValue() : -1;
+	}
+
+	public int getComponentCount() {
+		return components.size();
+	}
+
+	public int getLargestComponentSize() {
+		int largest = 0;
+		for (List<Long> component : components) {
+			largest = Math.max(largest, component.size());
+		}
+		return largest;
+	}
+}
@@ -0,0 +1,67 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.boetzmeyer.systemmodel.ConfigurationItem;
+import de.boetzmeyer.systemmodel.IServer;
+
+/**
+ * Key to item map and item tree of the configuration items per application.
+ * The items of an application are loaded on the first read and dropped again
+ * whenever the application gets configured through the context, or when
+ * items or links saved outside the context are announced by invalidate.
+ */
+final class ConfigurationIndex {
+	private final IServer systemAccess;
+	private final Map<Long, Map<String, ConfigurationItem>> itemsByApp = new HashMap<Long, Map<String, ConfigurationItem>>();
+	private final Map<Long, ConfigurationTree> treesByApp = new HashMap<Long, ConfigurationTree>();
+
+	public ConfigurationIndex(final IServer inSystemAccess) {
+		systemAccess = inSystemAccess;
+	}
+
+	public synchronized String getValue(final long inApp, final String inKey) {
+		final ConfigurationItem item = getItems(inApp).get(inKey);
+		return (item != null) ? item.getItemValue() : null;
+	}
+
+	public synchronized ConfigurationItem getItem(final long inApp, final String inKey) {
+		return getItems(inApp).get(inKey);
+	}
+
+	public synchronized ConfigurationTree getTree(final long inApp) {
+		ConfigurationTree tree = treesByApp.get(inApp);
+		if (tree == null) {
+			tree = ConfigurationTree.load(systemAccess, inApp);
+			treesByApp.put(inApp, tree);
+		}
+		return tree;
+	}
+
+	public synchronized void invalidate(final long inApp) {
+		itemsByApp.remove(inApp);
+		treesByApp.remove(inApp);
+	}
+
+	private Map<String, ConfigurationItem> getItems(final long inApp) {
+		Map<String, ConfigurationItem> items = itemsByApp.get(inApp);
+		if (items == null) {
+			items = load(inApp);
+			itemsByApp.put(inApp, items);
+		}
+		return items;
+	}
+
+	private Map<String, ConfigurationItem> load(final long inApp) {
+		final List<ConfigurationItem> items = systemAccess.referencesConfigurationItemByApplicationConfig(inApp);
+		final Map<String, ConfigurationItem> itemsByKey = new HashMap<String, ConfigurationItem>(items.size() * 2);
+		for (ConfigurationItem item : items) {
+			if ((item != null) && (item.getItemKey() != null) && !itemsByKey.containsKey(item.getItemKey())) {
+				itemsByKey.put(item.getItemKey(), item);
+			}
+		}
+		return itemsByKey;
+	}
+}
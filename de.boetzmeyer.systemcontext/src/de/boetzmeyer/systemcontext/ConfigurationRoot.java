@@ -0,0 +1,67 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.Collections;
+import java.util.List;
+
+import de.boetzmeyer.systemmodel.ConfigurationItem;
+
+/**
+ * Outcome of resolving the root configuration item of an application. If the
+ * parent links of the items run into a cycle, there is no root and the
+ * result carries the items of the cycle in parent order instead.
+ */
+public final class ConfigurationRoot {
+	public enum Status {
+		FOUND, NO_ITEMS, CYCLE
+	}
+
+	private final Status status;
+	private final ConfigurationItem item;
+	private final List<ConfigurationItem> cycle;
+
+	private ConfigurationRoot(final Status inStatus, final ConfigurationItem inItem, final List<ConfigurationItem> inCycle) {
+		status = inStatus;
+		item = inItem;
+		cycle = Collections.unmodifiableList(inCycle);
+	}
+
+	static ConfigurationRoot found(final ConfigurationItem inItem) {
+		return new ConfigurationRoot(Status.FOUND, inItem, Collections.<ConfigurationItem> emptyList());
+	}
+
+	static ConfigurationRoot noItems() {
+		return new ConfigurationRoot(Status.NO_ITEMS, null, Collections.<ConfigurationItem> emptyList());
+	}
+
+	static ConfigurationRoot cycle(final List<ConfigurationItem> inCycle) {
+		return new ConfigurationRoot(Status.CYCLE, null, inCycle);
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * The root item, or null if the application has no items or its items
+	 * form a cycle.
+	 */
+	public ConfigurationItem getItem() {
+		return item;
+	}
+
+	/**
+	 * The items of the cycle, starting at the item where the parent chain
+	 * closes, or an empty list if the hierarchy has a root.
+	 */
+	public List<ConfigurationItem> getCycle() {
+		return cycle;
+	}
+
+	public boolean isFound() {
+		return status == Status.FOUND;
+	}
+
+	public boolean isCycle() {
+		return status == Status.CYCLE;
+	}
+}
@@ -0,0 +1,162 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.boetzmeyer.systemmodel.ConfigurationItem;
+import de.boetzmeyer.systemmodel.ConfigurationItemLink;
+import de.boetzmeyer.systemmodel.IServer;
+
+/**
+ * The configuration items of one application with their links resolved into
+ * parent pointers and child lists. The tree is built from two bulk queries,
+ * one for the items of the application and one for the configuration item
+ * links, and not changed afterwards, so walking it does not touch the server
+ * again and it can be shared between threads.
+ */
+final class ConfigurationTree {
+	private final Map<Long, ConfigurationItem> itemsByKey = new LinkedHashMap<Long, ConfigurationItem>();
+	private final Map<Long, Long> parentsByItem = new HashMap<Long, Long>();
+	private final Map<Long, List<Long>> childrenByItem = new HashMap<Long, List<Long>>();
+	private ConfigurationRoot root;
+
+	private ConfigurationTree() {
+	}
+
+	public static ConfigurationTree load(final IServer inSystemAccess, final long inApp) {
+		final ConfigurationTree tree = new ConfigurationTree();
+		final List<ConfigurationItem> items = inSystemAccess.referencesConfigurationItemByApplicationConfig(inApp);
+		for (ConfigurationItem item : items) {
+			if (item != null) {
+				tree.itemsByKey.put(item.getPrimaryKey(), item);
+			}
+		}
+		if (tree.itemsByKey.size() > 1) {
+			final List<ConfigurationItemLink> links = inSystemAccess.listConfigurationItemLink();
+			for (ConfigurationItemLink link : links) {
+				if ((link != null) && tree.itemsByKey.containsKey(link.getSource()) && tree.itemsByKey.containsKey(link.getDestination())) {
+					tree.link(link.getSource(), link.getDestination());
+				}
+			}
+		}
+		tree.resolveRoot();
+		return tree;
+	}
+
+	private void link(final long inParent, final long inChild) {
+		List<Long> children = childrenByItem.get(inParent);
+		if (children == null) {
+			children = new ArrayList<Long>(2);
+			childrenByItem.put(inParent, children);
+		}
+		children.add(inChild);
+		if (!parentsByItem.containsKey(inChild)) {
+			parentsByItem.put(inChild, inParent);
+		}
+	}
+
+	/**
+	 * Follows the parent pointers from the first item of the application up
+	 * to its root. A parent chain that runs into a cycle has no root, the
+	 * items of the cycle are kept instead.
+	 */
+	private void resolveRoot() {
+		if (itemsByKey.isEmpty()) {
+			root = ConfigurationRoot.noItems();
+			return;
+		}
+		final Set<Long> visited = new HashSet<Long>();
+		Long item = itemsByKey.keySet().iterator().next();
+		while (visited.add(item)) {
+			final Long parent = parentsByItem.get(item);
+			if (parent == null) {
+				root = ConfigurationRoot.found(itemsByKey.get(item));
+				return;
+			}
+			item = parent;
+		}
+		final List<ConfigurationItem> cycle = new ArrayList<ConfigurationItem>();
+		Long cycleItem = item;
+		do {
+			cycle.add(itemsByKey.get(cycleItem));
+			cycleItem = parentsByItem.get(cycleItem);
+		} while (!cycleItem.equals(item));
+		root = ConfigurationRoot.cycle(cycle);
+	}
+
+	public ConfigurationRoot getRoot() {
+		return root;
+	}
+
+	/**
+	 * The dotted keys of the ancestors of the item, starting at the root, or
+	 * null if the item has no parent.
+	 */
+	public String getPathKey(final long inItem) {
+		final Deque<String> keys = new ArrayDeque<String>();
+		final Set<Long> visited = new HashSet<Long>();
+		visited.add(inItem);
+		Long parent = parentsByItem.get(inItem);
+		while ((parent != null) && visited.add(parent)) {
+			keys.push(itemsByKey.get(parent).getItemKey());
+			parent = parentsByItem.get(parent);
+		}
+		if (keys.isEmpty()) {
+			return null;
+		}
+		final StringBuilder path = new StringBuilder();
+		for (String key : keys) {
+			if (path.length() > 0) {
+				path.append('.');
+			}
+			path.append(key);
+		}
+		return path.toString();
+	}
+
+	/**
+	 * Flattens the subtree below the item into dotted keys, prefixed with the
+	 * path of its ancestors. Every item is visited once.
+	 */
+	public Map<String, String> getConfigurations(final long inItem) {
+		final Map<String, String> config = new HashMap<String, String>();
+		final ConfigurationItem item = itemsByKey.get(inItem);
+		if (item != null) {
+			final Set<Long> visited = new HashSet<Long>();
+			final Deque<Long> pendingItems = new ArrayDeque<Long>();
+			final Deque<String> pendingPaths = new ArrayDeque<String>();
+			visited.add(inItem);
+			pendingItems.push(inItem);
+			pendingPaths.push(concat(getPathKey(inItem), item.getItemKey()));
+			while (!pendingItems.isEmpty()) {
+				final Long current = pendingItems.pop();
+				final String pathKey = pendingPaths.pop();
+				config.put(pathKey, itemsByKey.get(current).getItemValue());
+				final List<Long> children = childrenByItem.get(current);
+				if (children != null) {
+					for (Long child : children) {
+						if (visited.add(child)) {
+							pendingItems.push(child);
+							pendingPaths.push(concat(pathKey, itemsByKey.get(child).getItemKey()));
+						}
+					}
+				}
+			}
+		}
+		return config;
+	}
+
+	private static String concat(final String inPathKey, final String inKey) {
+		if (inPathKey == null) {
+			return inKey;
+		}
+		return String.format("%s.%s", inPathKey, inKey);
+	}
+}
@@ -0,0 +1,473 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.boetzmeyer.systemmodel.ApplicationConfig;
+import de.boetzmeyer.systemmodel.ApplicationInstallation;
+import de.boetzmeyer.systemmodel.ApplicationLink;
+import de.boetzmeyer.systemmodel.ApplicationSession;
+import de.boetzmeyer.systemmodel.Computer;
+import de.boetzmeyer.systemmodel.DatabaseInstallation;
+import de.boetzmeyer.systemmodel.DatabaseSession;
+import de.boetzmeyer.systemmodel.IRecordable;
+import de.boetzmeyer.systemmodel.IServer;
+import de.boetzmeyer.systemmodel.Infrastructure;
+import de.boetzmeyer.systemmodel.Network;
+import de.boetzmeyer.systemmodel.SystemConfig;
+import de.boetzmeyer.systemmodel.SystemLink;
+import de.boetzmeyer.systemmodel.SystemModel;
+
+/**
+ * In-memory lookup structures shared by all services of one system context.
+ */
+final class ContextIndex {
+	private final NameIndex<SystemConfig> systemsByName;
+	private final NameIndex<ApplicationConfig> appsByName;
+	private final NameIndex<Computer> computersByName;
+	private final NameIndex<Computer> computersByAddress;
+	private final AddressTrie<Computer> computerAddresses;
+	private final NameIndex<Network> networksByName;
+	private final NameIndex<Infrastructure> infrastructuresByName;
+	private final LinkIndex<ApplicationLink> appLinks;
+	private final LinkIndex<SystemLink> systemLinks;
+	private final DependencyClosure appDependencies;
+	private final TopologyIndex topology;
+	private final ConfigurationIndex appConfigurations;
+	private final SessionIndex<ApplicationSession> appSessions;
+	private final SessionIndex<DatabaseSession> databaseSessions;
+	private final SessionStateIndex sessionStates;
+	private final InstallationIndex appInstallations;
+	private final VersionLocks versionLocks;
+	private final Object localServerLock;
+	private final RecordCache<SystemConfig> systemCache;
+	private final RecordCache<ApplicationConfig> appCache;
+	private final RecordCache<Computer> computerCache;
+	private final RecordCache<Network> networkCache;
+	private final RecordCache<Infrastructure> infrastructureCache;
+	private final RecordCache<ApplicationSession> appSessionCache;
+	private volatile PropertyStateWriter propertyStateWriter;
+	private final Map<Class<? extends IRecordable>, RecordCache<?>> caches = new LinkedHashMap<Class<? extends IRecordable>, RecordCache<?>>();
+
+	/**
+	 * inLocalServer tells whether inSystemAccess is the local file server.
+	 */
+	public ContextIndex(final IServer inSystemAccess, final boolean inLocalServer) {
+		versionLocks = new VersionLocks(this);
+		localServerLock = inLocalServer ? new Object() : null;
+		systemsByName = new NameIndex<SystemConfig>() {
+			@Override
+			protected List<SystemConfig> load() {
+				return inSystemAccess.listSystemConfig();
+			}
+
+			@Override
+			protected String getName(SystemConfig inSystem) {
+				return inSystem.getSystemName();
+			}
+		};
+		appsByName = new NameIndex<ApplicationConfig>() {
+			@Override
+			protected List<ApplicationConfig> load() {
+				return inSystemAccess.listApplicationConfig();
+			}
+
+			@Override
+			protected String getName(ApplicationConfig inApp) {
+				return inApp.getApplicationName();
+			}
+		};
+		computersByName = new NameIndex<Computer>() {
+			@Override
+			protected List<Computer> load() {
+				return inSystemAccess.listComputer();
+			}
+
+			@Override
+			protected String getName(Computer inComputer) {
+				return inComputer.getComputerName();
+			}
+		};
+		computersByAddress = new NameIndex<Computer>() {
+			@Override
+			protected List<Computer> load() {
+				return inSystemAccess.listComputer();
+			}
+
+			@Override
+			protected String getName(Computer inComputer) {
+				return inComputer.getIPAddress();
+			}
+		};
+		computerAddresses = new AddressTrie<Computer>() {
+			@Override
+			protected List<Computer> load() {
+				return inSystemAccess.listComputer();
+			}
+
+			@Override
+			protected String getAddress(Computer inComputer) {
+				return inComputer.getIPAddress();
+			}
+		};
+		networksByName = new NameIndex<Network>() {
+			@Override
+			protected List<Network> load() {
+				return inSystemAccess.listNetwork();
+			}
+
+			@Override
+			protected String getName(Network inNetwork) {
+				return inNetwork.getNetworkName();
+			}
+		};
+		infrastructuresByName = new NameIndex<Infrastructure>() {
+			@Override
+			protected List<Infrastructure> load() {
+				return inSystemAccess.listInfrastructure();
+			}
+
+			@Override
+			protected String getName(Infrastructure inInfrastructure) {
+				return inInfrastructure.getInfrastructureName();
+			}
+		};
+		appLinks = new LinkIndex<ApplicationLink>() {
+			@Override
+			protected List<ApplicationLink> load() {
+				return inSystemAccess.listApplicationLink();
+			}
+
+			@Override
+			protected long getSource(ApplicationLink inLink) {
+				return inLink.getSource();
+			}
+
+			@Override
+			protected long getDestination(ApplicationLink inLink) {
+				return inLink.getDestination();
+			}
+		};
+		systemLinks = new LinkIndex<SystemLink>() {
+			@Override
+			protected List<SystemLink> load() {
+				return inSystemAccess.listSystemLink();
+			}
+
+			@Override
+			protected long getSource(SystemLink inLink) {
+				return inLink.getSource();
+			}
+
+			@Override
+			protected long getDestination(SystemLink inLink) {
+				return inLink.getDestination();
+			}
+		};
+		appDependencies = new DependencyClosure(inSystemAccess, appLinks);
+		topology = new TopologyIndex(inSystemAccess, appLinks, systemLinks);
+		appConfigurations = new ConfigurationIndex(inSystemAccess);
+		appSessions = new SessionIndex<ApplicationSession>() {
+			@Override
+			protected List<ApplicationSession> loadOpenSessions() {
+				final List<ApplicationSession> openSessions = new ArrayList<ApplicationSession>();
+				for (ApplicationSession session : inSystemAccess.listApplicationSession()) {
+					if ((session != null) && isOpen(session.getFromDate(), session.getToDate())) {
+						openSessions.add(session);
+					}
+				}
+				return openSessions;
+			}
+
+			@Override
+			protected Map<Long, Long> loadComputersByInstallation() {
+				final Map<Long, Long> computers = new HashMap<Long, Long>();
+				for (ApplicationInstallation installation : inSystemAccess.listApplicationInstallation()) {
+					if (installation != null) {
+						computers.put(installation.getPrimaryKey(), installation.getComputer());
+					}
+				}
+				return computers;
+			}
+
+			@Override
+			protected long getInstallation(ApplicationSession inSession) {
+				return inSession.getApplicationInstallation();
+			}
+		};
+		databaseSessions = new SessionIndex<DatabaseSession>() {
+			@Override
+			protected List<DatabaseSession> loadOpenSessions() {
+				final List<DatabaseSession> openSessions = new ArrayList<DatabaseSession>();
+				for (DatabaseSession session : inSystemAccess.listDatabaseSession()) {
+					if ((session != null) && isOpen(session.getFromDate(), session.getToDate())) {
+						openSessions.add(session);
+					}
+				}
+				return openSessions;
+			}
+
+			@Override
+			protected Map<Long, Long> loadComputersByInstallation() {
+				final Map<Long, Long> computers = new HashMap<Long, Long>();
+				for (DatabaseInstallation installation : inSystemAccess.listDatabaseInstallation()) {
+					if (installation != null) {
+						computers.put(installation.getPrimaryKey(), installation.getComputer());
+					}
+				}
+				return computers;
+			}
+
+			@Override
+			protected long getInstallation(DatabaseSession inSession) {
+				return inSession.getDatabaseInstallation();
+			}
+		};
+		sessionStates = new SessionStateIndex(inSystemAccess, appSessions);
+		appInstallations = new InstallationIndex(inSystemAccess);
+		systemCache = new RecordCache<SystemConfig>() {
+			@Override
+			protected SystemConfig load(long inPrimaryKey) {
+				return inSystemAccess.findByIDSystemConfig(inPrimaryKey);
+			}
+		};
+		appCache = new RecordCache<ApplicationConfig>() {
+			@Override
+			protected ApplicationConfig load(long inPrimaryKey) {
+				return inSystemAccess.findByIDApplicationConfig(inPrimaryKey);
+			}
+		};
+		computerCache = new RecordCache<Computer>() {
+			@Override
+			protected Computer load(long inPrimaryKey) {
+				return inSystemAccess.findByIDComputer(inPrimaryKey);
+			}
+		};
+		networkCache = new RecordCache<Network>() {
+			@Override
+			protected Network load(long inPrimaryKey) {
+				return inSystemAccess.findByIDNetwork(inPrimaryKey);
+			}
+		};
+		infrastructureCache = new RecordCache<Infrastructure>() {
+			@Override
+			protected Infrastructure load(long inPrimaryKey) {
+				return inSystemAccess.findByIDInfrastructure(inPrimaryKey);
+			}
+		};
+		appSessionCache = new RecordCache<ApplicationSession>() {
+			@Override
+			protected ApplicationSession load(long inPrimaryKey) {
+				return inSystemAccess.findByIDApplicationSession(inPrimaryKey);
+			}
+		};
+		caches.put(SystemConfig.class, systemCache);
+		caches.put(ApplicationConfig.class, appCache);
+		caches.put(Computer.class, computerCache);
+		caches.put(Network.class, networkCache);
+		caches.put(Infrastructure.class, infrastructureCache);
+		caches.put(ApplicationSession.class, appSessionCache);
+	}
+
+	private static boolean isOpen(final Date inFromDate, final Date inToDate) {
+		return (inFromDate != null) && (inToDate != null) && (inFromDate.getTime() == inToDate.getTime());
+	}
+
+	public NameIndex<SystemConfig> getSystemsByName() {
+		return systemsByName;
+	}
+
+	public NameIndex<ApplicationConfig> getAppsByName() {
+		return appsByName;
+	}
+
+	public NameIndex<Computer> getComputersByName() {
+		return computersByName;
+	}
+
+	public NameIndex<Computer> getComputersByAddress() {
+		return computersByAddress;
+	}
+
+	public AddressTrie<Computer> getComputerAddresses() {
+		return computerAddresses;
+	}
+
+	public void addComputer(final Computer inComputer) {
+		computersByName.add(inComputer);
+		computersByAddress.add(inComputer);
+		computerAddresses.add(inComputer);
+		topology.invalidate(TopologyIndex.COMPUTERS);
+	}
+
+	public void removeComputer(final long inPrimaryKey) {
+		computersByName.remove(inPrimaryKey);
+		computersByAddress.remove(inPrimaryKey);
+		computerAddresses.remove(inPrimaryKey);
+		computerCache.invalidate(inPrimaryKey);
+		topology.invalidate(TopologyIndex.COMPUTERS);
+	}
+
+	public NameIndex<Network> getNetworksByName() {
+		return networksByName;
+	}
+
+	public NameIndex<Infrastructure> getInfrastructuresByName() {
+		return infrastructuresByName;
+	}
+
+	public LinkIndex<ApplicationLink> getAppLinks() {
+		return appLinks;
+	}
+
+	public LinkIndex<SystemLink> getSystemLinks() {
+		return systemLinks;
+	}
+
+	public DependencyClosure getAppDependencies() {
+		return appDependencies;
+	}
+
+	public TopologyIndex getTopology() {
+		return topology;
+	}
+
+	public ConfigurationIndex getAppConfigurations() {
+		return appConfigurations;
+	}
+
+	public SessionIndex<ApplicationSession> getAppSessions() {
+		return appSessions;
+	}
+
+	public SessionIndex<DatabaseSession> getDatabaseSessions() {
+		return databaseSessions;
+	}
+
+	public SessionStateIndex getSessionStates() {
+		return sessionStates;
+	}
+
+	public void closeAppSession(final long inPrimaryKey) {
+		appSessions.remove(inPrimaryKey);
+		sessionStates.removeSession(inPrimaryKey);
+		appSessionCache.invalidate(inPrimaryKey);
+	}
+
+	public InstallationIndex getAppInstallations() {
+		return appInstallations;
+	}
+
+	/**
+	 * The write-behind buffer of property state updates, or null if updates
+	 * are written directly.
+	 */
+	public PropertyStateWriter getPropertyStateWriter() {
+		return propertyStateWriter;
+	}
+
+	public void setPropertyStateWriter(final PropertyStateWriter inPropertyStateWriter) {
+		propertyStateWriter = inPropertyStateWriter;
+	}
+
+	public boolean isLocalServer() {
+		return localServerLock != null;
+	}
+
+	public VersionLocks getVersionLocks() {
+		return versionLocks;
+	}
+
+	/**
+	 * Saves the model and invalidates the cached records it contains, so the
+	 * next lookup by primary key reads what was saved.
+	 * <p>
+	 * The local server keeps its records in an unsynchronized model and
+	 * stages every update in a file named by the current millisecond, so
+	 * saves to it are serialized. A database server takes concurrent saves,
+	 * and they are not serialized.
+	 */
+	public boolean save(final SystemModel inModel) {
+		try {
+			if (localServerLock != null) {
+				synchronized (localServerLock) {
+					return inModel.save();
+				}
+			}
+			return inModel.save();
+		} finally {
+			invalidate(systemCache, inModel.listSystemConfig());
+			invalidate(appCache, inModel.listApplicationConfig());
+			invalidate(computerCache, inModel.listComputer());
+			invalidate(networkCache, inModel.listNetwork());
+			invalidate(infrastructureCache, inModel.listInfrastructure());
+			invalidate(appSessionCache, inModel.listApplicationSession());
+		}
+	}
+
+	public boolean save(final IRecordable inRecord) {
+		try {
+			if (localServerLock != null) {
+				synchronized (localServerLock) {
+					return inRecord.save();
+				}
+			}
+			return inRecord.save();
+		} finally {
+			final RecordCache<?> cache = caches.get(inRecord.getClass());
+			if (cache != null) {
+				cache.invalidate(inRecord.getPrimaryKey());
+			}
+		}
+	}
+
+	private static void invalidate(final RecordCache<?> inCache, final List<? extends IRecordable> inRecords) {
+		for (IRecordable record : inRecords) {
+			if (record != null) {
+				inCache.invalidate(record.getPrimaryKey());
+			}
+		}
+	}
+
+	public RecordCache<SystemConfig> getSystemCache() {
+		return systemCache;
+	}
+
+	public RecordCache<ApplicationConfig> getAppCache() {
+		return appCache;
+	}
+
+	public RecordCache<Computer> getComputerCache() {
+		return computerCache;
+	}
+
+	public RecordCache<Network> getNetworkCache() {
+		return networkCache;
+	}
+
+	public RecordCache<Infrastructure> getInfrastructureCache() {
+		return infrastructureCache;
+	}
+
+	public RecordCache<ApplicationSession> getAppSessionCache() {
+		return appSessionCache;
+	}
+
+	/**
+	 * Sets the capacity of the record cache of the given type. Returns false if
+	 * records of the type are not cached.
+	 */
+	public boolean setCacheCapacity(final Class<? extends IRecordable> inRecordType, final int inCapacity) {
+		final RecordCache<?> cache = caches.get(inRecordType);
+		if (cache != null) {
+			cache.setCapacity(inCapacity);
+			return true;
+		}
+		return false;
+	}
+
+}
@@ -1,5 +1,6 @@
 package de.boetzmeyer.systemcontext;
 
+import java.util.Collection;
 import java.util.List;
 
 import de.boetzmeyer.systemmodel.ApplicationConfig;
@@ -21,6 +22,12 @@ public interface DataModelService {
 	ModelDataType addModelDataType(ModelDataType inModelDataType);
 
 	ModelEntity addModelEntity(ModelEntity inModelEntity);
+
+	BulkResult<DataModel> addDataModels(Collection<DataModel> inDataModels);
+
+	BulkResult<ModelAttribute> addModelAttributes(Collection<ModelAttribute> inModelAttributes);
+
+	BulkResult<ModelEntity> addModelEntities(Collection<ModelEntity> inModelEntities);
 	
 	List<DataModel> getDataModels(ApplicationConfig inApp);
 
@@ -1,6 +1,7 @@
 package de.boetzmeyer.systemcontext;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import de.boetzmeyer.systemmodel.ApplicationConfig;
@@ -15,8 +16,8 @@ import de.boetzmeyer.systemmodel.SystemModel;
 
 final class DataModelServiceImpl extends SystemContextService implements DataModelService {
 
-	public DataModelServiceImpl(final IServer inSystemAccess) {
-		super(inSystemAccess);
+	public DataModelServiceImpl(final IServer inSystemAccess, final ContextIndex inIndex) {
+		super(inSystemAccess, inIndex);
 	}
 
 	@Override
@@ -24,7 +25,7 @@ final class DataModelServiceImpl extends SystemContextService implements DataMod
 		if ((inDataModel != null) && inDataModel.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addDataModel(inDataModel);
-			model.save();
+			index.save(model);
 			return inDataModel;
 		}
 		return null;
@@ -35,7 +36,7 @@ final class DataModelServiceImpl extends SystemContextService implements DataMod
 		if ((inModelAttribute != null) && inModelAttribute.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addModelAttribute(inModelAttribute);
-			model.save();
+			index.save(model);
 			return inModelAttribute;
 		}
 		return null;
@@ -46,7 +47,7 @@ final class DataModelServiceImpl extends SystemContextService implements DataMod
 		if ((inModelReference != null) && inModelReference.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addModelReference(inModelReference);
-			model.save();
+			index.save(model);
 			return inModelReference;
 		}
 		return null;
@@ -57,7 +58,7 @@ final class DataModelServiceImpl extends SystemContextService implements DataMod
 		if ((inModelDataType != null) && inModelDataType.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addModelDataType(inModelDataType);
-			model.save();
+			index.save(model);
 			return inModelDataType;
 		}
 		return null;
@@ -68,12 +69,72 @@ final class DataModelServiceImpl extends SystemContextService implements DataMod
 		if ((inModelEntity != null) && inModelEntity.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addModelEntity(inModelEntity);
-			model.save();
+			index.save(model);
 			return inModelEntity;
 		}
 		return null;
 	}
 
+	@Override
+	public BulkResult<DataModel> addDataModels(final Collection<DataModel> inDataModels) {
+		return new BulkInsert<DataModel>(index) {
+			@Override
+			protected boolean isValid(final DataModel inDataModel) {
+				return inDataModel.isValid();
+			}
+
+			@Override
+			protected String getErrorDescription(final DataModel inDataModel) {
+				return inDataModel.getErrorDescription();
+			}
+
+			@Override
+			protected boolean add(final SystemModel inModel, final DataModel inDataModel) {
+				return inModel.addDataModel(inDataModel);
+			}
+		}.insert(inDataModels);
+	}
+
+	@Override
+	public BulkResult<ModelAttribute> addModelAttributes(final Collection<ModelAttribute> inModelAttributes) {
+		return new BulkInsert<ModelAttribute>(index) {
+			@Override
+			protected boolean isValid(final ModelAttribute inModelAttribute) {
+				return inModelAttribute.isValid();
+			}
+
+			@Override
+			protected String getErrorDescription(final ModelAttribute inModelAttribute) {
+				return inModelAttribute.getErrorDescription();
+			}
+
+			@Override
+			protected boolean add(final SystemModel inModel, final ModelAttribute inModelAttribute) {
+				return inModel.addModelAttribute(inModelAttribute);
+			}
+		}.insert(inModelAttributes);
+	}
+
+	@Override
+	public BulkResult<ModelEntity> addModelEntities(final Collection<ModelEntity> inModelEntities) {
+		return new BulkInsert<ModelEntity>(index) {
+			@Override
+			protected boolean isValid(final ModelEntity inModelEntity) {
+				return inModelEntity.isValid();
+			}
+
+			@Override
+			protected String getErrorDescription(final ModelEntity inModelEntity) {
+				return inModelEntity.getErrorDescription();
+			}
+
+			@Override
+			protected boolean add(final SystemModel inModel, final ModelEntity inModelEntity) {
+				return inModel.addModelEntity(inModelEntity);
+			}
+		}.insert(inModelEntities);
+	}
+
 	@Override
 	public List<DataModel> getDataModels(ApplicationConfig inApp) {
 		final List<DataModel> dataModels = new ArrayList<DataModel>();
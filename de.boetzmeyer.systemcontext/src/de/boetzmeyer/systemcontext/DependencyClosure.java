@@ -0,0 +1,122 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.boetzmeyer.systemmodel.ApplicationConfig;
+import de.boetzmeyer.systemmodel.ApplicationLink;
+import de.boetzmeyer.systemmodel.IServer;
+import de.boetzmeyer.systemmodel.SystemModel;
+
+/**
+ * Transitive dependency closure of applications along their application
+ * links. Every application is visited once, so cycles and shared subtrees
+ * are walked only once. A closure is cached per application until one of
+ * the applications it contains gets changed or connected. At most
+ * MAX_CLOSURES closures are cached, the least recently used one is dropped
+ * beyond that.
+ */
+final class DependencyClosure {
+	private static final int MAX_CLOSURES = 256;
+
+	private final IServer systemAccess;
+	private final LinkIndex<ApplicationLink> appLinks;
+	private final Map<Long, ApplicationConfig> appsByKey = new HashMap<Long, ApplicationConfig>();
+	private final Map<Long, Closure> closuresByApp = new LinkedHashMap<Long, Closure>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Long, Closure> inEldest) {
+			return size() > MAX_CLOSURES;
+		}
+	};
+	private boolean loaded;
+
+	public DependencyClosure(final IServer inSystemAccess, final LinkIndex<ApplicationLink> inAppLinks) {
+		systemAccess = inSystemAccess;
+		appLinks = inAppLinks;
+	}
+
+	public synchronized SystemModel export(final long inApp) {
+		Closure closure = closuresByApp.get(inApp);
+		if (closure == null) {
+			closure = walk(inApp);
+			closuresByApp.put(inApp, closure);
+		}
+		final SystemModel dependencyGraph = SystemModel.createEmpty();
+		dependencyGraph.addAllApplicationConfig(closure.apps);
+		dependencyGraph.addAllApplicationLink(closure.links);
+		return dependencyGraph;
+	}
+
+	public synchronized void addApp(final ApplicationConfig inApp) {
+		if (inApp != null) {
+			if (loaded) {
+				appsByKey.put(inApp.getPrimaryKey(), inApp);
+			}
+			invalidate(inApp.getPrimaryKey());
+		}
+	}
+
+	/**
+	 * Drops every cached closure that contains the given application.
+	 */
+	public synchronized void invalidate(final long inApp) {
+		final Iterator<Closure> closures = closuresByApp.values().iterator();
+		while (closures.hasNext()) {
+			if (closures.next().visited.contains(inApp)) {
+				closures.remove();
+			}
+		}
+	}
+
+	private Closure walk(final long inApp) {
+		ensureLoaded();
+		final Closure closure = new Closure();
+		final ApplicationConfig rootApp = appsByKey.get(inApp);
+		if (rootApp != null) {
+			final Deque<ApplicationConfig> pending = new ArrayDeque<ApplicationConfig>();
+			closure.visited.add(inApp);
+			pending.push(rootApp);
+			while (!pending.isEmpty()) {
+				final ApplicationConfig app = pending.pop();
+				closure.apps.add(app);
+				for (ApplicationLink appLink : appLinks.getOutgoing(app.getPrimaryKey())) {
+					closure.links.add(appLink);
+					if (closure.visited.add(appLink.getDestination())) {
+						final ApplicationConfig destinationApp = appsByKey.get(appLink.getDestination());
+						if (destinationApp != null) {
+							pending.push(destinationApp);
+						}
+					}
+				}
+			}
+		}
+		return closure;
+	}
+
+	private void ensureLoaded() {
+		if (!loaded) {
+			for (ApplicationConfig app : systemAccess.listApplicationConfig()) {
+				if (app != null) {
+					appsByKey.put(app.getPrimaryKey(), app);
+				}
+			}
+			loaded = true;
+		}
+	}
+
+	private static final class Closure {
+		private final Set<Long> visited = new HashSet<Long>();
+		private final List<ApplicationConfig> apps = new ArrayList<ApplicationConfig>();
+		private final List<ApplicationLink> links = new ArrayList<ApplicationLink>();
+	}
+}
@@ -1,5 +1,16 @@
 package de.boetzmeyer.systemcontext;
 
+import de.boetzmeyer.systemmodel.IRecordable;
+
 public interface ISystemContext extends InfrastructureService, ApplicationService, DataModelService, SessionService, InstallationService {
 
+	UnitOfWork beginWork();
+
+	/**
+	 * Sets how many records of the type are cached for lookups by primary
+	 * key, 0 disables the cache. Cached records are shared between callers and
+	 * must not be changed; save changed copies instead. Returns false if
+	 * records of the type are not cached.
+	 */
+	boolean setCacheCapacity(Class<? extends IRecordable> inRecordType, int inCapacity);
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package de.boetzmeyer.systemcontext;
 
+import java.util.Collection;
 import java.util.List;
 
 import de.boetzmeyer.systemmodel.ApplicationConfig;
@@ -20,12 +21,32 @@ public interface InfrastructureService {
 
 	boolean disonnectSystems(SystemConfig inSourceSystem, SystemConfig inTargetSystem);
 
+	SystemModel getSystemDependents(SystemConfig inSystem);
+
+	SystemModel getSystemDependents(SystemConfig inSystem, int inMaxDepth);
+
+	ComponentAnalysis analyseSystemDependencies();
+
+	int getHopCount(SystemConfig inSource, SystemConfig inDestination);
+
+	List<SystemConfig> getShortestPath(SystemConfig inSource, SystemConfig inDestination);
+
+	TopologySnapshot getTopology();
+
+	List<SystemLink> getStrongestSystemLinks(List<SystemConfig> inSystems, int inMaxConnections);
+
 	SystemConfig addSystem(SystemConfig inSystem);
 
 	Computer addComputer(Computer inComputer);
 
 	Network addNetwork(Network inNetwork);
 
+	BulkResult<SystemConfig> addSystems(Collection<SystemConfig> inSystems);
+
+	BulkResult<Computer> addComputers(Collection<Computer> inComputers);
+
+	BulkResult<Network> addNetworks(Collection<Network> inNetworks);
+
 	SystemConfig getSystemByName(String inSystemName);
 
 	List<Network> getNetworks();
@@ -38,6 +59,12 @@ public interface InfrastructureService {
 
 	Network findNetwork(String inNetworkName);
 
+	Computer findComputerByAddress(String inIPAddress);
+
+	List<Computer> getComputersInRange(String inAddressRange);
+
+	Network findNetworkByAddress(String inIPAddress);
+
 	List<Computer> getComputers(String inNetworkName);
 
 	List<Computer> getComputers(Network inNetwork);
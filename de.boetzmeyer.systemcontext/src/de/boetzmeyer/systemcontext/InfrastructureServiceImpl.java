@@ -1,6 +1,7 @@
 package de.boetzmeyer.systemcontext;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import de.boetzmeyer.systemmodel.ApplicationConfig;
@@ -17,9 +18,10 @@ import de.boetzmeyer.systemmodel.SystemModel;
 import de.boetzmeyer.systemmodel.SystemType;
 
 final class InfrastructureServiceImpl extends SystemContextService implements InfrastructureService {
+	private static final int UNLIMITED_DEPTH = -1;
 
-	public InfrastructureServiceImpl(final IServer inSystemAccess) {
-		super(inSystemAccess);
+	public InfrastructureServiceImpl(final IServer inSystemAccess, final ContextIndex inIndex) {
+		super(inSystemAccess, inIndex);
 	}
 
 	@Override
@@ -27,7 +29,9 @@ final class InfrastructureServiceImpl extends SystemContextService implements In
 		if ((inInfrastructure != null) && inInfrastructure.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addInfrastructure(inInfrastructure);
-			model.save();
+			if (index.save(model)) {
+				index.getInfrastructuresByName().add(inInfrastructure);
+			}
 			return inInfrastructure;
 		}
 		return null;
@@ -43,7 +47,10 @@ final class InfrastructureServiceImpl extends SystemContextService implements In
 				systemLink.setDestination(inTargetSystem.getPrimaryKey());
 				final SystemModel model = SystemModel.createEmpty();
 				model.addSystemLink(systemLink);
-				model.save();
+				if (index.save(model)) {
+					index.getSystemLinks().add(systemLink);
+					index.getTopology().invalidate(TopologyIndex.SYSTEM_LINKS);
+				}
 			}
 			return systemLink;
 		}
@@ -55,23 +62,101 @@ final class InfrastructureServiceImpl extends SystemContextService implements In
 		if ((inSourceSystem != null) && inSourceSystem.isValid() && (inTargetSystem != null) && inTargetSystem.isValid()) {
 			SystemLink systemLink = findSystemLink(inSourceSystem, inTargetSystem);
 			if (systemLink != null) {
-				return systemAccess.deleteSystemLink(systemLink.getPrimaryKey());
+				if (systemAccess.deleteSystemLink(systemLink.getPrimaryKey())) {
+					index.getSystemLinks().remove(systemLink);
+					index.getTopology().invalidate(TopologyIndex.SYSTEM_LINKS);
+					return true;
+				}
+				return false;
 			}
 		}
 		return true;
 	}
 	
-	private SystemLink findSystemLink(final SystemConfig inSourceSystem, final SystemConfig inTargetSystem) {
-		if ((inSourceSystem != null) && (inTargetSystem != null)) {
-			final List<SystemLink> targetLinks = systemAccess.referencesSystemLinkBySource(inSourceSystem.getPrimaryKey());
-			for (SystemLink systemLink : targetLinks) {
-				if (systemLink != null) {
-					if (systemLink.getDestination() == inTargetSystem.getPrimaryKey()) {
-						return systemLink;
+	@Override
+	public SystemModel getSystemDependents(SystemConfig inSystem) {
+		return getSystemDependents(inSystem, UNLIMITED_DEPTH);
+	}
+
+	@Override
+	public SystemModel getSystemDependents(SystemConfig inSystem, int inMaxDepth) {
+		final SystemModel dependents = SystemModel.createEmpty();
+		if (inSystem != null) {
+			final SystemConfig system = findSystem(inSystem.getPrimaryKey());
+			if (system != null) {
+				dependents.addSystemConfig(system);
+				final List<SystemLink> systemLinks = index.getSystemLinks().getIncomingClosure(system.getPrimaryKey(), inMaxDepth);
+				for (SystemLink systemLink : systemLinks) {
+					dependents.addSystemLink(systemLink);
+					final SystemConfig dependentSystem = findSystem(systemLink.getSource());
+					if (dependentSystem != null) {
+						dependents.addSystemConfig(dependentSystem);
 					}
 				}
 			}
 		}
+		return dependents;
+	}
+
+	@Override
+	public ComponentAnalysis analyseSystemDependencies() {
+		final ComponentAnalyser analyser = new ComponentAnalyser();
+		for (SystemConfig system : systemAccess.listSystemConfig()) {
+			if (system != null) {
+				analyser.addNode(system.getPrimaryKey());
+			}
+		}
+		for (SystemLink systemLink : index.getSystemLinks().getLinks()) {
+			analyser.addLink(systemLink.getSource(), systemLink.getDestination());
+		}
+		return analyser.analyse();
+	}
+
+	@Override
+	public List<SystemLink> getStrongestSystemLinks(List<SystemConfig> inSystems, int inMaxConnections) {
+		return new Analyser(systemAccess, index.getAppLinks()).getStrongestSystemLinks(inSystems, inMaxConnections);
+	}
+
+	@Override
+	public int getHopCount(SystemConfig inSource, SystemConfig inDestination) {
+		if ((inSource != null) && (inDestination != null)) {
+			return index.getSystemLinks().getGraph().getDistance(inSource.getPrimaryKey(), inDestination.getPrimaryKey());
+		}
+		return -1;
+	}
+
+	@Override
+	public List<SystemConfig> getShortestPath(SystemConfig inSource, SystemConfig inDestination) {
+		final List<SystemConfig> systems = new ArrayList<SystemConfig>();
+		if ((inSource != null) && (inDestination != null)) {
+			final List<Long> path = index.getSystemLinks().getGraph().getShortestPath(inSource.getPrimaryKey(), inDestination.getPrimaryKey());
+			for (Long systemKey : path) {
+				final SystemConfig system = findSystem(systemKey);
+				if (system != null) {
+					systems.add(system);
+				}
+			}
+		}
+		return systems;
+	}
+
+	@Override
+	public TopologySnapshot getTopology() {
+		return index.getTopology().getSnapshot();
+	}
+
+	private SystemConfig findSystem(final long inSystem) {
+		final SystemConfig system = index.getSystemsByName().get(inSystem);
+		if (system != null) {
+			return system;
+		}
+		return index.getSystemCache().get(inSystem);
+	}
+
+	private SystemLink findSystemLink(final SystemConfig inSourceSystem, final SystemConfig inTargetSystem) {
+		if ((inSourceSystem != null) && (inTargetSystem != null)) {
+			return index.getSystemLinks().find(inSourceSystem.getPrimaryKey(), inTargetSystem.getPrimaryKey());
+		}
 		return null;
 	}
 
@@ -80,7 +165,7 @@ final class InfrastructureServiceImpl extends SystemContextService implements In
 		if ((inSystemType != null) && inSystemType.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addSystemType(inSystemType);
-			model.save();
+			index.save(model);
 			return inSystemType;
 		}
 		return null;
@@ -91,7 +176,10 @@ final class InfrastructureServiceImpl extends SystemContextService implements In
 		if ((inSystem != null) && inSystem.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addSystemConfig(inSystem);
-			model.save();
+			if (index.save(model)) {
+				index.getSystemsByName().add(inSystem);
+				index.getTopology().invalidate(TopologyIndex.SYSTEMS);
+			}
 			return inSystem;
 		}
 		return null;
@@ -102,7 +190,9 @@ final class InfrastructureServiceImpl extends SystemContextService implements In
 		if ((inComputer != null) && inComputer.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addComputer(inComputer);
-			model.save();
+			if (index.save(model)) {
+				index.addComputer(inComputer);
+			}
 			return inComputer;
 		}
 		return null;
@@ -113,21 +203,99 @@ final class InfrastructureServiceImpl extends SystemContextService implements In
 		if ((inNetwork != null) && inNetwork.isValid()) {
 			final SystemModel model = SystemModel.createEmpty();
 			model.addNetwork(inNetwork);
-			model.save();
+			if (index.save(model)) {
+				index.getNetworksByName().add(inNetwork);
+			}
 			return inNetwork;
 		}
 		return null;
 	}
 
 	@Override
-	public SystemConfig getSystemByName(String inSystemName) {
-		final List<SystemConfig> configs = systemAccess.listSystemConfig();
-		for (SystemConfig systemConfig : configs) {
-			if (inSystemName.equalsIgnoreCase(systemConfig.getSystemName())) {
-				return systemConfig;
+	public BulkResult<SystemConfig> addSystems(final Collection<SystemConfig> inSystems) {
+		return new BulkInsert<SystemConfig>(index) {
+			@Override
+			protected boolean isValid(final SystemConfig inSystem) {
+				return inSystem.isValid();
 			}
-		}
-		return null;
+
+			@Override
+			protected String getErrorDescription(final SystemConfig inSystem) {
+				return inSystem.getErrorDescription();
+			}
+
+			@Override
+			protected boolean add(final SystemModel inModel, final SystemConfig inSystem) {
+				return inModel.addSystemConfig(inSystem);
+			}
+
+			@Override
+			protected void added(final List<SystemConfig> inAddedSystems) {
+				for (SystemConfig system : inAddedSystems) {
+					index.getSystemsByName().add(system);
+				}
+				index.getTopology().invalidate(TopologyIndex.SYSTEMS);
+			}
+		}.insert(inSystems);
+	}
+
+	@Override
+	public BulkResult<Computer> addComputers(final Collection<Computer> inComputers) {
+		return new BulkInsert<Computer>(index) {
+			@Override
+			protected boolean isValid(final Computer inComputer) {
+				return inComputer.isValid();
+			}
+
+			@Override
+			protected String getErrorDescription(final Computer inComputer) {
+				return inComputer.getErrorDescription();
+			}
+
+			@Override
+			protected boolean add(final SystemModel inModel, final Computer inComputer) {
+				return inModel.addComputer(inComputer);
+			}
+
+			@Override
+			protected void added(final List<Computer> inAddedComputers) {
+				for (Computer computer : inAddedComputers) {
+					index.addComputer(computer);
+				}
+			}
+		}.insert(inComputers);
+	}
+
+	@Override
+	public BulkResult<Network> addNetworks(final Collection<Network> inNetworks) {
+		return new BulkInsert<Network>(index) {
+			@Override
+			protected boolean isValid(final Network inNetwork) {
+				return inNetwork.isValid();
+			}
+
+			@Override
+			protected String getErrorDescription(final Network inNetwork) {
+				return inNetwork.getErrorDescription();
+			}
+
+			@Override
+			protected boolean add(final SystemModel inModel, final Network inNetwork) {
+				return inModel.addNetwork(inNetwork);
+			}
+
+			@Override
+			protected void added(final List<Network> inAddedNetworks) {
+				for (Network network : inAddedNetworks) {
+					index.getNetworksByName().add(network);
+				}
+			}
+		}.insert(inNetworks);
+	}
+
+	@Override
+	public SystemConfig getSystemByName(String inSystemName) {
+		return index.getSystemsByName().find(inSystemName);
 	}
 
 	@Override
@@ -147,24 +315,33 @@ final class InfrastructureServiceImpl extends SystemContextService implements In
 
 	@Override
 	public SystemModel getSystemInfrastructure(String inInfrastructureName) {
-		if (inInfrastructureName != null) {
-			final List<Infrastructure> infrastructures = getInfrastructures();
-			for (Infrastructure infrastructure : infrastructures) {
-				if (inInfrastructureName.equalsIgnoreCase(infrastructure.getInfrastructureName())) {
-					return getSystemInfrastructure(infrastructure);
-				}
-			}
+		final Infrastructure infrastructure = index.getInfrastructuresByName().find(inInfrastructureName);
+		if (infrastructure != null) {
+			return getSystemInfrastructure(infrastructure);
 		}
 		return SystemModel.createEmpty();
 	}
 
 	@Override
 	public Network findNetwork(String inNetworkName) {
-		final List<Network> networks = getNetworks();
-		for (Network network : networks) {
-			if (inNetworkName.equalsIgnoreCase(network.getNetworkName())) {
-				return network;
-			}
+		return index.getNetworksByName().find(inNetworkName);
+	}
+
+	@Override
+	public Computer findComputerByAddress(String inIPAddress) {
+		return index.getComputersByAddress().find(inIPAddress);
+	}
+
+	@Override
+	public List<Computer> getComputersInRange(String inAddressRange) {
+		return index.getComputerAddresses().findInRange(inAddressRange);
+	}
+
+	@Override
+	public Network findNetworkByAddress(String inIPAddress) {
+		final Computer computer = findComputerByAddress(inIPAddress);
+		if (computer != null) {
+			return index.getNetworkCache().get(computer.getNetwork());
 		}
 		return null;
 	}
@@ -228,7 +405,7 @@ final class InfrastructureServiceImpl extends SystemContextService implements In
 	public SystemModel getComputerModel(Computer inComputer) {
 		final SystemModel systemModel = SystemModel.createEmpty();
 		if (inComputer != null) {
-			final Computer computer = systemAccess.findByIDComputer(inComputer.getPrimaryKey());
+			final Computer computer = index.getComputerCache().get(inComputer.getPrimaryKey());
 			if (computer != null) {
 				systemModel.addComputer(computer);
 				final List<DatabaseInstallation> databaseInstallations = systemAccess.referencesDatabaseInstallationByComputer(computer.getPrimaryKey());
@@ -246,7 +423,7 @@ final class InfrastructureServiceImpl extends SystemContextService implements In
 	public SystemModel getSystemInfrastructureModel(Infrastructure inInfrastructure) {
 		final SystemModel systemModel = SystemModel.createEmpty();
 		if (inInfrastructure != null) {
-			final Infrastructure infrastructure = systemAccess.findByIDInfrastructure(inInfrastructure.getPrimaryKey());
+			final Infrastructure infrastructure = index.getInfrastructureCache().get(inInfrastructure.getPrimaryKey());
 			if (infrastructure != null) {
 				systemModel.addInfrastructure(infrastructure);
 				final List<SystemConfig> systems = systemAccess.referencesSystemConfigByInfrastructure(infrastructure.getPrimaryKey());
@@ -261,7 +438,7 @@ final class InfrastructureServiceImpl extends SystemContextService implements In
 	public SystemModel getSystemModel(SystemConfig inSystem) {
 		final SystemModel systemModel = SystemModel.createEmpty();
 		if (inSystem != null) {
-			final SystemConfig system = systemAccess.findByIDSystemConfig(inSystem.getPrimaryKey());
+			final SystemConfig system = index.getSystemCache().get(inSystem.getPrimaryKey());
 			if (system != null) {
 				systemModel.addSystemConfig(system);
 				final List<ApplicationConfig> apps = systemAccess.referencesApplicationConfigBySystemConfig(system.getPrimaryKey());
@@ -279,17 +456,7 @@ final class InfrastructureServiceImpl extends SystemContextService implements In
 	}
 	
 	private SystemConfig findSystemByName(final String inSystemName) {
-		if (inSystemName != null) {
-			final List<SystemConfig> systems = getSystems();
-			for (SystemConfig system : systems) {
-				if (system != null) {
-					if (inSystemName.equalsIgnoreCase(system.getSystemName())) {
-						return system;
-					}
-				}
-			}
-		}
-		return null;
+		return index.getSystemsByName().find(inSystemName);
 	}
 
 	@Override
@@ -338,7 +505,7 @@ final class InfrastructureServiceImpl extends SystemContextService implements In
 	@Override
 	public Computer findComputer(Computer inComputer) {
 		if (inComputer != null) {
-			return systemAccess.findByIDComputer(inComputer.getPrimaryKey());
+			return index.getComputerCache().get(inComputer.getPrimaryKey());
 		}
 		return null;
 	}
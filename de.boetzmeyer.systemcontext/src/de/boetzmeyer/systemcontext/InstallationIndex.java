@@ -0,0 +1,133 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import de.boetzmeyer.systemmodel.ApplicationInstallation;
+import de.boetzmeyer.systemmodel.IServer;
+
+/**
+ * Application installations ordered by installation date, fleet-wide and per
+ * computer. Range queries cost O(log n + k). The index is loaded lazily and
+ * kept in sync by the installation service.
+ */
+final class InstallationIndex {
+	private final IServer systemAccess;
+	private final TreeMap<Long, Map<Long, ApplicationInstallation>> installations = new TreeMap<Long, Map<Long, ApplicationInstallation>>();
+	private final Map<Long, TreeMap<Long, Map<Long, ApplicationInstallation>>> installationsByComputer = new HashMap<Long, TreeMap<Long, Map<Long, ApplicationInstallation>>>();
+	private final Map<Long, ApplicationInstallation> installationsByKey = new HashMap<Long, ApplicationInstallation>();
+	private final Map<Long, Long> datesByKey = new HashMap<Long, Long>();
+	private boolean loaded;
+
+	public InstallationIndex(final IServer inSystemAccess) {
+		systemAccess = inSystemAccess;
+	}
+
+	public synchronized List<ApplicationInstallation> getInstallations(final Date inFrom, final Date inTo) {
+		ensureLoaded();
+		return collect(installations, inFrom, inTo);
+	}
+
+	public synchronized List<ApplicationInstallation> getInstallations(final long inComputer, final Date inFrom, final Date inTo) {
+		ensureLoaded();
+		final TreeMap<Long, Map<Long, ApplicationInstallation>> computerInstallations = installationsByComputer.get(inComputer);
+		if (computerInstallations != null) {
+			return collect(computerInstallations, inFrom, inTo);
+		}
+		return new ArrayList<ApplicationInstallation>();
+	}
+
+	public synchronized void add(final ApplicationInstallation inInstallation) {
+		if ((inInstallation != null) && loaded) {
+			remove(inInstallation.getPrimaryKey());
+			put(inInstallation);
+		}
+	}
+
+	public synchronized void remove(final long inInstallation) {
+		final ApplicationInstallation installation = installationsByKey.remove(inInstallation);
+		final Long date = datesByKey.remove(inInstallation);
+		if ((installation != null) && (date != null)) {
+			erase(installations, date, inInstallation);
+			final TreeMap<Long, Map<Long, ApplicationInstallation>> computerInstallations = installationsByComputer.get(installation.getComputer());
+			if (computerInstallations != null) {
+				erase(computerInstallations, date, inInstallation);
+				if (computerInstallations.isEmpty()) {
+					installationsByComputer.remove(installation.getComputer());
+				}
+			}
+		}
+	}
+
+	private void ensureLoaded() {
+		if (!loaded) {
+			final List<ApplicationInstallation> allInstallations = systemAccess.listApplicationInstallation();
+			for (ApplicationInstallation installation : allInstallations) {
+				if (installation != null) {
+					put(installation);
+				}
+			}
+			loaded = true;
+		}
+	}
+
+	private void put(final ApplicationInstallation inInstallation) {
+		final Date installationDate = inInstallation.getInstallationDate();
+		if (installationDate != null) {
+			final long date = installationDate.getTime();
+			insert(installations, date, inInstallation);
+			TreeMap<Long, Map<Long, ApplicationInstallation>> computerInstallations = installationsByComputer.get(inInstallation.getComputer());
+			if (computerInstallations == null) {
+				computerInstallations = new TreeMap<Long, Map<Long, ApplicationInstallation>>();
+				installationsByComputer.put(inInstallation.getComputer(), computerInstallations);
+			}
+			insert(computerInstallations, date, inInstallation);
+			installationsByKey.put(inInstallation.getPrimaryKey(), inInstallation);
+			datesByKey.put(inInstallation.getPrimaryKey(), date);
+		}
+	}
+
+	private static void insert(final TreeMap<Long, Map<Long, ApplicationInstallation>> inTree, final long inDate, final ApplicationInstallation inInstallation) {
+		Map<Long, ApplicationInstallation> sameDate = inTree.get(inDate);
+		if (sameDate == null) {
+			sameDate = new LinkedHashMap<Long, ApplicationInstallation>(2);
+			inTree.put(inDate, sameDate);
+		}
+		sameDate.put(inInstallation.getPrimaryKey(), inInstallation);
+	}
+
+	private static void erase(final TreeMap<Long, Map<Long, ApplicationInstallation>> inTree, final long inDate, final long inInstallation) {
+		final Map<Long, ApplicationInstallation> sameDate = inTree.get(inDate);
+		if (sameDate != null) {
+			sameDate.remove(inInstallation);
+			if (sameDate.isEmpty()) {
+				inTree.remove(inDate);
+			}
+		}
+	}
+
+	/**
+	 * Collects the installations after inFrom (exclusive) and before inTo
+	 * (exclusive). A null bound leaves that side of the range open.
+	 */
+	private static List<ApplicationInstallation> collect(final TreeMap<Long, Map<Long, ApplicationInstallation>> inTree, final Date inFrom, final Date inTo) {
+		NavigableMap<Long, Map<Long, ApplicationInstallation>> range = inTree;
+		if (inFrom != null) {
+			range = range.tailMap(inFrom.getTime(), false);
+		}
+		if (inTo != null) {
+			range = range.headMap(inTo.getTime(), false);
+		}
+		final List<ApplicationInstallation> result = new ArrayList<ApplicationInstallation>();
+		for (Map<Long, ApplicationInstallation> sameDate : range.values()) {
+			result.addAll(sameDate.values());
+		}
+		return result;
+	}
+}
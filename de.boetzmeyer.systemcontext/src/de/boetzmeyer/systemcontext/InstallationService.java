@@ -17,6 +17,8 @@ public interface InstallationService {
 
 	void uninstallComputer(Computer inComputer);
 
+	boolean uninstallComputers(List<Computer> inComputers);
+
 	List<ApplicationInstallation> getInstallations(Computer inComputer);
 
 	ApplicationInstallation installApp(String inComputerName, String inApplicationName);
@@ -35,6 +37,10 @@ public interface InstallationService {
 
 	List<ApplicationInstallation> getInstallationsSince(Computer inComputer, Date inSince);
 
+	List<ApplicationInstallation> getInstallationsSince(Date inSince);
+
+	List<ApplicationInstallation> getInstallationsBetween(Date inFrom, Date inTo);
+
 	List<ApplicationInstallation> getAppInstallations(InterfaceMethod inMethod);
 
 	List<ApplicationInstallation> getAppInstallationsAvailable(InterfaceMethod inMethod);
@@ -1,27 +1,25 @@
 package de.boetzmeyer.systemcontext;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import de.boetzmeyer.systemmodel.ApplicationConfig;
 import de.boetzmeyer.systemmodel.ApplicationInstallation;
 import de.boetzmeyer.systemmodel.ApplicationInterface;
-import de.boetzmeyer.systemmodel.ApplicationSession;
+import de.boetzmeyer.systemmodel.Attribute;
 import de.boetzmeyer.systemmodel.Computer;
 import de.boetzmeyer.systemmodel.DataModel;
 import de.boetzmeyer.systemmodel.DatabaseInstallation;
-import de.boetzmeyer.systemmodel.DatabaseSession;
 import de.boetzmeyer.systemmodel.IServer;
 import de.boetzmeyer.systemmodel.InterfaceMethod;
 import de.boetzmeyer.systemmodel.Network;
-import de.boetzmeyer.systemmodel.PropertyState;
-import de.boetzmeyer.systemmodel.SessionState;
 
 final class InstallationServiceImpl extends SystemContextService implements InstallationService {
 
-	public InstallationServiceImpl(final IServer inSystemAccess) {
-		super(inSystemAccess);
+	public InstallationServiceImpl(final IServer inSystemAccess, final ContextIndex inIndex) {
+		super(inSystemAccess, inIndex);
 	}
 
 	@Override
@@ -33,10 +31,13 @@ final class InstallationServiceImpl extends SystemContextService implements Inst
 	}
 	
 	private ApplicationInstallation findInstallation(final Computer inComputer, final ApplicationConfig inApp) {
-		if (inApp != null) {
-			List<ApplicationInstallation> computerInstallations = getInstallations(inComputer);
-			for (ApplicationInstallation installation : computerInstallations) {
-				if (inApp.getPrimaryKey() == installation.getApplicationConfig()) {
+		if ((inComputer != null) && (inApp != null)) {
+			final List<ApplicationInstallation> installations = systemAccess.listApplicationInstallation(Query.create()
+					.references(Attribute.APPLICATIONINSTALLATION_COMPUTER, inComputer.getPrimaryKey())
+					.references(Attribute.APPLICATIONINSTALLATION_APPLICATIONCONFIG, inApp.getPrimaryKey()).toConditions());
+			for (ApplicationInstallation installation : installations) {
+				if ((installation != null) && (installation.getComputer() == inComputer.getPrimaryKey())
+						&& (installation.getApplicationConfig() == inApp.getPrimaryKey())) {
 					return installation;
 				}
 			}
@@ -44,23 +45,12 @@ final class InstallationServiceImpl extends SystemContextService implements Inst
 		return null;
 	}
 	
-	private List<Computer> getComputers() {
-		return systemAccess.listComputer();
-	}
-
 	private Computer findComputer(final String inComputer) {
-		final List<Computer> computers = getComputers();
-		for (Computer computer : computers) {
-			if (inComputer.equalsIgnoreCase(computer.getComputerName())) {
-				return computer;
-			}
-		}
-		for (Computer computer : computers) {
-			if (inComputer.equalsIgnoreCase(computer.getIPAddress())) {
-				return computer;
-			}
+		final Computer computer = index.getComputersByName().find(inComputer);
+		if (computer != null) {
+			return computer;
 		}
-		return null;
+		return index.getComputersByAddress().find(inComputer);
 	}
 
 	@Override
@@ -78,7 +68,10 @@ final class InstallationServiceImpl extends SystemContextService implements Inst
 					} else {
 						applicationInstallation.setInstallationDate(new Date());
 					}
-					applicationInstallation.save();
+					if (index.save(applicationInstallation)) {
+						index.getAppInstallations().add(applicationInstallation);
+						index.getTopology().invalidate(TopologyIndex.INSTALLATIONS);
+					}
 					return applicationInstallation;
 				}
 			}
@@ -87,13 +80,7 @@ final class InstallationServiceImpl extends SystemContextService implements Inst
 	}
 	
 	private ApplicationConfig findAppByName(final String inApplicationName) {
-		final List<ApplicationConfig> apps = systemAccess.listApplicationConfig();
-		for (ApplicationConfig app : apps) {
-			if (inApplicationName.equalsIgnoreCase(app.getApplicationName())) {
-				return app;
-			}
-		}
-		return null;
+		return index.getAppsByName().find(inApplicationName);
 	}
 
 	@Override
@@ -106,7 +93,10 @@ final class InstallationServiceImpl extends SystemContextService implements Inst
 					final ApplicationInstallation applicationInstallation = ApplicationInstallation.generate();
 					applicationInstallation.setApplicationConfig(app.getPrimaryKey());
 					applicationInstallation.setComputer(computer.getPrimaryKey());
-					applicationInstallation.save();
+					if (index.save(applicationInstallation)) {
+						index.getAppInstallations().add(applicationInstallation);
+						index.getTopology().invalidate(TopologyIndex.INSTALLATIONS);
+					}
 					return applicationInstallation;
 				}
 			}
@@ -116,7 +106,7 @@ final class InstallationServiceImpl extends SystemContextService implements Inst
 
 	private Computer findComputer(Computer inComputer) {
 		if (inComputer != null) {
-			return systemAccess.findByIDComputer(inComputer.getPrimaryKey());
+			return index.getComputerCache().get(inComputer.getPrimaryKey());
 		}
 		return null;
 	}
@@ -124,30 +114,14 @@ final class InstallationServiceImpl extends SystemContextService implements Inst
 	@Override
 	public void uninstallApp(ApplicationInstallation inApplicationInstallation) {
 		if (inApplicationInstallation != null) {
-			final List<ApplicationSession> appSessions = systemAccess.referencesApplicationSessionByApplicationInstallation(inApplicationInstallation.getPrimaryKey());
-			for (ApplicationSession appSession : appSessions) {
-				final List<SessionState> sessionStates = systemAccess.referencesSessionStateByApplicationSession(appSession.getPrimaryKey());
-				for (SessionState sessionState : sessionStates) {
-					final List<PropertyState> propertyStates = systemAccess.referencesPropertyStateBySessionState(sessionState.getPrimaryKey());
-					for (PropertyState propertyState : propertyStates) {
-						systemAccess.deletePropertyState(propertyState.getPrimaryKey());
-					}
-					systemAccess.deleteSessionState(sessionState.getPrimaryKey());
-				}
-				systemAccess.deleteApplicationSession(appSession.getPrimaryKey());
-			}
-			systemAccess.deleteApplicationInstallation(inApplicationInstallation.getPrimaryKey());
+			new CascadeDelete(systemAccess, index).addAppInstallation(inApplicationInstallation.getPrimaryKey()).execute();
 		}
 	}
 
 	@Override
 	public void uninstallDatabase(DatabaseInstallation inDatabaseInstallation) {
 		if (inDatabaseInstallation != null) {
-			final List<DatabaseSession> dbSessions = systemAccess.referencesDatabaseSessionByDatabaseInstallation(inDatabaseInstallation.getPrimaryKey());
-			for (DatabaseSession dbSession : dbSessions) {
-				systemAccess.deleteDatabaseSession(dbSession.getPrimaryKey());
-			}
-			systemAccess.deleteDatabaseInstallation(inDatabaseInstallation.getPrimaryKey());
+			new CascadeDelete(systemAccess, index).addDatabaseInstallation(inDatabaseInstallation.getPrimaryKey()).execute();
 		}
 	}
 
@@ -163,7 +137,7 @@ final class InstallationServiceImpl extends SystemContextService implements Inst
 						dbInstallation = DatabaseInstallation.generate();
 						dbInstallation.setDataModel(dataModel.getPrimaryKey());
 						dbInstallation.setComputer(computer.getPrimaryKey());
-						dbInstallation.save();
+						index.save(dbInstallation);
 					}
 					return dbInstallation;
 				}
@@ -182,10 +156,13 @@ final class InstallationServiceImpl extends SystemContextService implements Inst
 	@Override
 	public DatabaseInstallation findDatabaseInstallation(DataModel inDataModel, Computer inComputer) {
 		if ((inComputer != null) && (inDataModel != null)) {
-			final List<DatabaseInstallation> dbInstallations = systemAccess.referencesDatabaseInstallationByDataModel(inDataModel.getPrimaryKey());
+			final List<DatabaseInstallation> dbInstallations = systemAccess.listDatabaseInstallation(Query.create()
+					.references(Attribute.DATABASEINSTALLATION_DATAMODEL, inDataModel.getPrimaryKey())
+					.references(Attribute.DATABASEINSTALLATION_COMPUTER, inComputer.getPrimaryKey()).toConditions());
 			for (DatabaseInstallation dbInstallation : dbInstallations) {
 				if (dbInstallation != null) {
-					if (dbInstallation.getComputer() == inComputer.getPrimaryKey()) {
+					if ((dbInstallation.getDataModel() == inDataModel.getPrimaryKey())
+							&& (dbInstallation.getComputer() == inComputer.getPrimaryKey())) {
 						return dbInstallation;
 					}
 				}
@@ -202,24 +179,54 @@ final class InstallationServiceImpl extends SystemContextService implements Inst
 	@Override
 	public List<ApplicationInstallation> getInstallationsSince(Computer inComputer, Date inSince) {
 		if (inComputer != null) {
-			final List<ApplicationInstallation> installations = systemAccess.referencesApplicationInstallationByComputer(inComputer.getPrimaryKey());
 			if (inSince != null) {
-				final List<ApplicationInstallation> latestInstallations = new ArrayList<ApplicationInstallation>();
-				for (ApplicationInstallation applicationInstallation : installations) {
-					if (applicationInstallation != null) {
-						if (inSince.before(applicationInstallation.getInstallationDate())) {
-							latestInstallations.add(applicationInstallation);
-						}
-					}
+				if (index.isLocalServer()) {
+					return index.getAppInstallations().getInstallations(inComputer.getPrimaryKey(), inSince, null);
 				}
-				return latestInstallations;
+				return listInstallations(Query.create().references(Attribute.APPLICATIONINSTALLATION_COMPUTER, inComputer.getPrimaryKey()), inComputer,
+						inSince, null);
 			} else {
-				return installations;
+				return systemAccess.referencesApplicationInstallationByComputer(inComputer.getPrimaryKey());
 			}
 		}
 		return new ArrayList<ApplicationInstallation>();
 	}
 
+	@Override
+	public List<ApplicationInstallation> getInstallationsSince(Date inSince) {
+		return getInstallationsBetween(inSince, null);
+	}
+
+	@Override
+	public List<ApplicationInstallation> getInstallationsBetween(Date inFrom, Date inTo) {
+		if (index.isLocalServer()) {
+			return index.getAppInstallations().getInstallations(inFrom, inTo);
+		}
+		return listInstallations(Query.create(), null, inFrom, inTo);
+	}
+
+	/**
+	 * Lets a database server select the installations of the date range, and
+	 * keeps those after inFrom and before inTo in the order of their dates,
+	 * as the installation index returns them on the local server.
+	 */
+	private List<ApplicationInstallation> listInstallations(final Query inQuery, final Computer inComputer, final Date inFrom, final Date inTo) {
+		final List<ApplicationInstallation> installations = new ArrayList<ApplicationInstallation>();
+		final List<ApplicationInstallation> candidates = systemAccess.listApplicationInstallation(inQuery
+				.after(Attribute.APPLICATIONINSTALLATION_INSTALLATIONDATE, inFrom)
+				.before(Attribute.APPLICATIONINSTALLATION_INSTALLATIONDATE, inTo).toConditions());
+		for (ApplicationInstallation installation : candidates) {
+			if ((installation != null) && (installation.getInstallationDate() != null)
+					&& ((inComputer == null) || (installation.getComputer() == inComputer.getPrimaryKey()))
+					&& ((inFrom == null) || installation.getInstallationDate().after(inFrom))
+					&& ((inTo == null) || installation.getInstallationDate().before(inTo))) {
+				installations.add(installation);
+			}
+		}
+		Collections.sort(installations, new ApplicationInstallation.ComparatorInstallationDate(true));
+		return installations;
+	}
+
 	@Override
 	public List<ApplicationInstallation> getAppInstallations(InterfaceMethod inMethod) {
 		if (inMethod != null) {
@@ -239,12 +246,8 @@ final class InstallationServiceImpl extends SystemContextService implements Inst
 		final List<ApplicationInstallation> availableInstallations = new ArrayList<ApplicationInstallation>();
 		final List<ApplicationInstallation> allInstallations = getAppInstallations(inMethod);
 		for (ApplicationInstallation installation : allInstallations) {
-			final List<ApplicationSession> sessions = systemAccess.referencesApplicationSessionByApplicationInstallation(installation.getPrimaryKey());
-			for (ApplicationSession session : sessions) {
-				if ((session.getFromDate().getTime() == session.getToDate().getTime())) {
-					availableInstallations.add(installation);
-					break;
-				}
+			if (index.getAppSessions().isRunning(installation.getPrimaryKey())) {
+				availableInstallations.add(installation);
 			}
 		}
 		return availableInstallations;
@@ -267,23 +270,30 @@ final class InstallationServiceImpl extends SystemContextService implements Inst
 		if (inNetwork != null) {
 			computer.setNetwork(inNetwork.getPrimaryKey());
 		}
-		computer.save();
+		if (index.save(computer)) {
+			index.addComputer(computer);
+		}
 		return computer;
 	}
 
 	@Override
 	public void uninstallComputer(Computer inComputer) {
 		if (inComputer != null) {
-			final List<ApplicationInstallation> appInstallations = systemAccess.referencesApplicationInstallationByComputer(inComputer.getPrimaryKey());
-			for (ApplicationInstallation applicationInstallation : appInstallations) {
-				uninstallApp(applicationInstallation);
-			}
-			final List<DatabaseInstallation> dbInstallations = systemAccess.referencesDatabaseInstallationByComputer(inComputer.getPrimaryKey());
-			for (DatabaseInstallation dbInstallation : dbInstallations) {
-				uninstallDatabase(dbInstallation);
+			new CascadeDelete(systemAccess, index).addComputer(inComputer.getPrimaryKey()).execute();
+		}
+	}
+
+	@Override
+	public boolean uninstallComputers(final List<Computer> inComputers) {
+		final CascadeDelete cascadeDelete = new CascadeDelete(systemAccess, index);
+		if (inComputers != null) {
+			for (Computer computer : inComputers) {
+				if (computer != null) {
+					cascadeDelete.addComputer(computer.getPrimaryKey());
+				}
 			}
-			systemAccess.deleteComputer(inComputer.getPrimaryKey());
 		}
+		return cascadeDelete.execute();
 	}
 
 }
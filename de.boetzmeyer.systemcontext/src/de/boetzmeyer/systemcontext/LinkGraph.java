@@ -0,0 +1,249 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable adjacency of one link type over dense int ids, stored as forward
+ * and reverse offset/target arrays. Path queries run a bidirectional breadth
+ * first search. Its parents and depths live in int arrays that each thread
+ * allocates once per graph and stamps with a search epoch, so a query
+ * neither boxes nor clears anything and a short path costs little however
+ * large the graph is.
+ */
+final class LinkGraph {
+	private final Map<Long, Integer> idsByNode;
+	private final long[] nodes;
+	private final int[] outOffsets;
+	private final int[] outTargets;
+	private final int[] inOffsets;
+	private final int[] inTargets;
+	private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch(nodes.length, outOffsets, outTargets, inOffsets, inTargets);
+		}
+	};
+
+	private LinkGraph(final Map<Long, Integer> inIdsByNode, final long[] inNodes, final int[] inSources, final int[] inDestinations) {
+		idsByNode = inIdsByNode;
+		nodes = inNodes;
+		outOffsets = new int[nodes.length + 1];
+		outTargets = new int[inSources.length];
+		inOffsets = new int[nodes.length + 1];
+		inTargets = new int[inSources.length];
+		fill(inSources, inDestinations, outOffsets, outTargets);
+		fill(inDestinations, inSources, inOffsets, inTargets);
+	}
+
+	/**
+	 * Builds the graph from source to destination to link maps.
+	 */
+	public static LinkGraph build(final Map<Long, ? extends Map<Long, ?>> inOutgoing) {
+		final Map<Long, Integer> idsByNode = new HashMap<Long, Integer>();
+		final List<Long> nodes = new ArrayList<Long>();
+		int linkCount = 0;
+		for (Map<Long, ?> destinations : inOutgoing.values()) {
+			linkCount += destinations.size();
+		}
+		final int[] sources = new int[linkCount];
+		final int[] destinations = new int[linkCount];
+		int link = 0;
+		for (Map.Entry<Long, ? extends Map<Long, ?>> entry : inOutgoing.entrySet()) {
+			final int source = getId(idsByNode, nodes, entry.getKey());
+			for (Long destination : entry.getValue().keySet()) {
+				sources[link] = source;
+				destinations[link] = getId(idsByNode, nodes, destination);
+				link++;
+			}
+		}
+		final long[] nodeKeys = new long[nodes.size()];
+		for (int node = 0; node < nodeKeys.length; node++) {
+			nodeKeys[node] = nodes.get(node);
+		}
+		return new LinkGraph(idsByNode, nodeKeys, sources, destinations);
+	}
+
+	private static int getId(final Map<Long, Integer> inIdsByNode, final List<Long> inNodes, final Long inNode) {
+		Integer id = inIdsByNode.get(inNode);
+		if (id == null) {
+			id = inNodes.size();
+			inIdsByNode.put(inNode, id);
+			inNodes.add(inNode);
+		}
+		return id;
+	}
+
+	private static void fill(final int[] inFrom, final int[] inTo, final int[] outOffsets, final int[] outTargets) {
+		for (int link = 0; link < inFrom.length; link++) {
+			outOffsets[inFrom[link] + 1]++;
+		}
+		for (int node = 1; node < outOffsets.length; node++) {
+			outOffsets[node] += outOffsets[node - 1];
+		}
+		final int[] position = new int[outOffsets.length];
+		System.arraycopy(outOffsets, 0, position, 0, outOffsets.length);
+		for (int link = 0; link < inFrom.length; link++) {
+			outTargets[position[inFrom[link]]++] = inTo[link];
+		}
+	}
+
+	/**
+	 * The number of links on the shortest path in link direction, 0 from a
+	 * node to itself, or -1 if the destination cannot be reached.
+	 */
+	public int getDistance(final long inSource, final long inDestination) {
+		return getShortestPath(inSource, inDestination).size() - 1;
+	}
+
+	/**
+	 * The primary keys on the shortest path in link direction, source and
+	 * destination included, or an empty list if there is no such path.
+	 */
+	public List<Long> getShortestPath(final long inSource, final long inDestination) {
+		if (inSource == inDestination) {
+			return Collections.singletonList(inSource);
+		}
+		final Integer source = idsByNode.get(inSource);
+		final Integer destination = idsByNode.get(inDestination);
+		if ((source == null) || (destination == null)) {
+			return Collections.emptyList();
+		}
+		final Scratch state = scratch.get();
+		final Search forward = state.forward;
+		final Search backward = state.backward;
+		final int epoch = state.nextEpoch();
+		forward.start(source, epoch);
+		backward.start(destination, epoch);
+		int meeting = -1;
+		while ((meeting == -1) && !forward.isExhausted() && !backward.isExhausted()) {
+			if (forward.frontierSize <= backward.frontierSize) {
+				meeting = forward.expand(backward);
+			} else {
+				meeting = backward.expand(forward);
+			}
+		}
+		if (meeting == -1) {
+			return Collections.emptyList();
+		}
+		final List<Long> path = new ArrayList<Long>();
+		for (int node = meeting; node != source; node = forward.parents[node]) {
+			path.add(nodes[node]);
+		}
+		path.add(nodes[source]);
+		Collections.reverse(path);
+		for (int node = meeting; node != destination;) {
+			node = backward.parents[node];
+			path.add(nodes[node]);
+		}
+		return path;
+	}
+
+	/**
+	 * The search state one thread reuses for every query on this graph.
+	 */
+	private static final class Scratch {
+		private final Search forward;
+		private final Search backward;
+		private int epoch;
+
+		private Scratch(final int inNodeCount, final int[] inOutOffsets, final int[] inOutTargets, final int[] inInOffsets, final int[] inInTargets) {
+			forward = new Search(inNodeCount, inOutOffsets, inOutTargets);
+			backward = new Search(inNodeCount, inInOffsets, inInTargets);
+		}
+
+		/**
+		 * The epoch of the next search. When the counter would overflow, the
+		 * stamps are cleared once and counting starts over.
+		 */
+		private int nextEpoch() {
+			if (epoch == Integer.MAX_VALUE) {
+				Arrays.fill(forward.stamps, 0);
+				Arrays.fill(backward.stamps, 0);
+				epoch = 0;
+			}
+			return ++epoch;
+		}
+	}
+
+	/**
+	 * One direction of the bidirectional search. A node counts as visited
+	 * only if its stamp equals the epoch of the running search, so parents
+	 * and depths left over from earlier searches are simply ignored.
+	 */
+	private static final class Search {
+		private static final int INITIAL_FRONTIER = 16;
+
+		private final int[] offsets;
+		private final int[] targets;
+		private final int[] stamps;
+		private final int[] parents;
+		private final int[] depths;
+		private int epoch;
+		private int[] frontier = new int[INITIAL_FRONTIER];
+		private int frontierSize;
+		private int[] nextFrontier = new int[INITIAL_FRONTIER];
+
+		private Search(final int inNodeCount, final int[] inOffsets, final int[] inTargets) {
+			offsets = inOffsets;
+			targets = inTargets;
+			stamps = new int[inNodeCount];
+			parents = new int[inNodeCount];
+			depths = new int[inNodeCount];
+		}
+
+		private void start(final int inStart, final int inEpoch) {
+			epoch = inEpoch;
+			stamps[inStart] = epoch;
+			parents[inStart] = inStart;
+			depths[inStart] = 0;
+			frontier[0] = inStart;
+			frontierSize = 1;
+		}
+
+		private boolean isExhausted() {
+			return frontierSize == 0;
+		}
+
+		private boolean isVisited(final int inNode) {
+			return stamps[inNode] == epoch;
+		}
+
+		/**
+		 * Expands the whole frontier by one level and returns the node where
+		 * the shortest joint path meets the other search, or -1.
+		 */
+		private int expand(final Search inOther) {
+			int meeting = -1;
+			int nextSize = 0;
+			for (int i = 0; i < frontierSize; i++) {
+				final int node = frontier[i];
+				final int depth = depths[node] + 1;
+				for (int link = offsets[node]; link < offsets[node + 1]; link++) {
+					final int target = targets[link];
+					if (!isVisited(target)) {
+						stamps[target] = epoch;
+						parents[target] = node;
+						depths[target] = depth;
+						if (nextSize == nextFrontier.length) {
+							nextFrontier = Arrays.copyOf(nextFrontier, nextSize * 2);
+						}
+						nextFrontier[nextSize++] = target;
+						if (inOther.isVisited(target) && ((meeting == -1) || (inOther.depths[target] < inOther.depths[meeting]))) {
+							meeting = target;
+						}
+					}
+				}
+			}
+			final int[] swap = frontier;
+			frontier = nextFrontier;
+			nextFrontier = swap;
+			frontierSize = nextSize;
+			return meeting;
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.boetzmeyer.systemmodel.IRecordable;
+
+/**
+ * Forward and reverse adjacency of one link type, keyed by the primary keys
+ * of the linked entities. A (source, destination) pair resolves to its link
+ * in constant time. The index is loaded lazily and kept in sync by the
+ * context services.
+ */
+abstract class LinkIndex<T extends IRecordable> {
+	private final Map<Long, Map<Long, T>> outgoing = new HashMap<Long, Map<Long, T>>();
+	private final Map<Long, Map<Long, T>> incoming = new HashMap<Long, Map<Long, T>>();
+	private LinkGraph graph;
+	private boolean loaded;
+
+	protected abstract List<T> load();
+
+	protected abstract long getSource(T inLink);
+
+	protected abstract long getDestination(T inLink);
+
+	public synchronized T find(final long inSource, final long inDestination) {
+		ensureLoaded();
+		final Map<Long, T> links = outgoing.get(inSource);
+		if (links != null) {
+			return links.get(inDestination);
+		}
+		return null;
+	}
+
+	public synchronized List<T> getOutgoing(final long inSource) {
+		ensureLoaded();
+		return copy(outgoing.get(inSource));
+	}
+
+	public synchronized List<T> getIncoming(final long inDestination) {
+		ensureLoaded();
+		return copy(incoming.get(inDestination));
+	}
+
+	/**
+	 * An immutable snapshot of the adjacency for path queries. It is built on
+	 * first use and again after the links have changed.
+	 */
+	public synchronized LinkGraph getGraph() {
+		ensureLoaded();
+		if (graph == null) {
+			graph = LinkGraph.build(outgoing);
+		}
+		return graph;
+	}
+
+	public synchronized List<T> getLinks() {
+		ensureLoaded();
+		final List<T> links = new ArrayList<T>();
+		for (Map<Long, T> sourceLinks : outgoing.values()) {
+			links.addAll(sourceLinks.values());
+		}
+		return links;
+	}
+
+	/**
+	 * Walks the links against their direction, breadth first, and returns
+	 * every link that leads to inDestination within inMaxDepth links. A
+	 * negative depth does not limit the walk.
+	 */
+	public synchronized List<T> getIncomingClosure(final long inDestination, final int inMaxDepth) {
+		ensureLoaded();
+		final List<T> links = new ArrayList<T>();
+		final Set<Long> visited = new HashSet<Long>();
+		visited.add(inDestination);
+		List<Long> level = new ArrayList<Long>();
+		level.add(inDestination);
+		int depth = 0;
+		while (!level.isEmpty() && ((inMaxDepth < 0) || (depth < inMaxDepth))) {
+			final List<Long> nextLevel = new ArrayList<Long>();
+			for (Long destination : level) {
+				final Map<Long, T> sources = incoming.get(destination);
+				if (sources != null) {
+					for (Map.Entry<Long, T> source : sources.entrySet()) {
+						links.add(source.getValue());
+						if (visited.add(source.getKey())) {
+							nextLevel.add(source.getKey());
+						}
+					}
+				}
+			}
+			level = nextLevel;
+			depth++;
+		}
+		return links;
+	}
+
+	public synchronized void add(final T inLink) {
+		if ((inLink != null) && loaded) {
+			put(inLink);
+			graph = null;
+		}
+	}
+
+	public synchronized void remove(final T inLink) {
+		if ((inLink != null) && loaded) {
+			final long source = getSource(inLink);
+			final long destination = getDestination(inLink);
+			erase(outgoing, source, destination);
+			erase(incoming, destination, source);
+			graph = null;
+		}
+	}
+
+	private void ensureLoaded() {
+		if (!loaded) {
+			final List<T> links = load();
+			for (T link : links) {
+				if (link != null) {
+					put(link);
+				}
+			}
+			loaded = true;
+		}
+	}
+
+	private void put(final T inLink) {
+		final long source = getSource(inLink);
+		final long destination = getDestination(inLink);
+		insert(outgoing, source, destination, inLink);
+		insert(incoming, destination, source, inLink);
+	}
+
+	private void insert(final Map<Long, Map<Long, T>> inAdjacency, final long inFrom, final long inTo, final T inLink) {
+		Map<Long, T> links = inAdjacency.get(inFrom);
+		if (links == null) {
+			links = new LinkedHashMap<Long, T>();
+			inAdjacency.put(inFrom, links);
+		}
+		links.put(inTo, inLink);
+	}
+
+	private void erase(final Map<Long, Map<Long, T>> inAdjacency, final long inFrom, final long inTo) {
+		final Map<Long, T> links = inAdjacency.get(inFrom);
+		if (links != null) {
+			links.remove(inTo);
+			if (links.isEmpty()) {
+				inAdjacency.remove(inFrom);
+			}
+		}
+	}
+
+	private List<T> copy(final Map<Long, T> inLinks) {
+		if (inLinks != null) {
+			return new ArrayList<T>(inLinks.values());
+		}
+		return new ArrayList<T>();
+	}
+}
@@ -0,0 +1,102 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import de.boetzmeyer.systemmodel.IRecordable;
+
+/**
+ * Case-insensitive name index of one entity type. The index is loaded lazily
+ * from the server on the first lookup and kept in sync by the context
+ * services afterwards.
+ */
+abstract class NameIndex<T extends IRecordable> {
+	private final Map<String, List<T>> entriesByName = new HashMap<String, List<T>>();
+	private final Map<Long, String> namesByKey = new HashMap<Long, String>();
+	private boolean loaded;
+
+	protected abstract List<T> load();
+
+	protected abstract String getName(T inEntry);
+
+	public synchronized T find(final String inName) {
+		if (inName != null) {
+			ensureLoaded();
+			final List<T> entries = entriesByName.get(normalize(inName));
+			if ((entries != null) && (entries.size() > 0)) {
+				return entries.get(0);
+			}
+		}
+		return null;
+	}
+
+	public synchronized T get(final long inPrimaryKey) {
+		ensureLoaded();
+		final String name = namesByKey.get(inPrimaryKey);
+		if (name != null) {
+			for (T entry : entriesByName.get(name)) {
+				if (entry.getPrimaryKey() == inPrimaryKey) {
+					return entry;
+				}
+			}
+		}
+		return null;
+	}
+
+	public synchronized void add(final T inEntry) {
+		if ((inEntry != null) && loaded) {
+			remove(inEntry.getPrimaryKey());
+			put(inEntry);
+		}
+	}
+
+	public synchronized void remove(final long inPrimaryKey) {
+		final String name = namesByKey.remove(inPrimaryKey);
+		if (name != null) {
+			final List<T> entries = entriesByName.get(name);
+			if (entries != null) {
+				for (int i = entries.size() - 1; i >= 0; i--) {
+					if (entries.get(i).getPrimaryKey() == inPrimaryKey) {
+						entries.remove(i);
+					}
+				}
+				if (entries.isEmpty()) {
+					entriesByName.remove(name);
+				}
+			}
+		}
+	}
+
+	private void ensureLoaded() {
+		if (!loaded) {
+			final List<T> entries = load();
+			for (T entry : entries) {
+				if (entry != null) {
+					put(entry);
+				}
+			}
+			loaded = true;
+		}
+	}
+
+	private void put(final T inEntry) {
+		final String name = getName(inEntry);
+		if (name != null) {
+			final String key = normalize(name);
+			List<T> entries = entriesByName.get(key);
+			if (entries == null) {
+				entries = new ArrayList<T>(1);
+				entriesByName.put(key, entries);
+			}
+			entries.add(inEntry);
+			namesByKey.put(inEntry.getPrimaryKey(), key);
+		}
+	}
+
+	static String normalize(final String inName) {
+		return inName.toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,282 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import de.boetzmeyer.systemmodel.PropertyState;
+import de.boetzmeyer.systemmodel.SessionState;
+import de.boetzmeyer.systemmodel.SystemModel;
+
+/**
+ * Write-behind buffer for property state updates. Updates of the same
+ * session, configuration item and case-insensitive property key are
+ * coalesced, and the buffer is written as one SystemModel when the flush
+ * interval elapses or the buffer is full. A writer that finds the buffer
+ * full flushes it before its update is taken, so producers are slowed down
+ * to the speed of the server instead of the buffer growing without bounds.
+ * Updates of a failed flush stay pending and are written by the next one;
+ * the indexed property states are changed only after a successful save.
+ */
+final class PropertyStateWriter {
+	private final ContextIndex index;
+	private final SessionStateIndex sessionStates;
+	private final int maxPending;
+	private final ScheduledExecutorService scheduler;
+	private final Object flushLock = new Object();
+	private Map<UpdateKey, Update> pending = new LinkedHashMap<UpdateKey, Update>();
+	private Map<UpdateKey, Update> writing = new LinkedHashMap<UpdateKey, Update>();
+
+	public PropertyStateWriter(final ContextIndex inIndex, final long inFlushIntervalMillis, final int inMaxPending) {
+		index = inIndex;
+		sessionStates = inIndex.getSessionStates();
+		maxPending = Math.max(1, inMaxPending);
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable inRunnable) {
+				final Thread thread = new Thread(inRunnable, "PropertyStateWriter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		if (inFlushIntervalMillis > 0) {
+			scheduler.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					flush();
+				}
+			}, inFlushIntervalMillis, inFlushIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Takes the update, or returns false if the buffer is full and cannot be
+	 * flushed.
+	 */
+	public boolean put(final long inSession, final long inItem, final String inKey, final String inValue) {
+		final UpdateKey key = new UpdateKey(inSession, inItem, NameIndex.normalize(inKey));
+		while (true) {
+			synchronized (this) {
+				final Update update = pending.get(key);
+				if (update != null) {
+					update.value = inValue;
+					update.lastUpdated = new Date();
+					return true;
+				}
+				if (pending.size() < maxPending) {
+					pending.put(key, new Update(inKey, inValue));
+					return true;
+				}
+			}
+			if (!flush()) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Takes over the pending updates of a closed writer that could not write
+	 * them. Updates taken by this writer already are newer and are kept.
+	 */
+	public void adopt(final PropertyStateWriter inWriter) {
+		final Map<UpdateKey, Update> updates;
+		synchronized (inWriter) {
+			updates = inWriter.pending;
+			inWriter.pending = new LinkedHashMap<UpdateKey, Update>();
+		}
+		synchronized (this) {
+			restore(updates);
+		}
+	}
+
+	/**
+	 * The values of the session and item that are not written yet, by their
+	 * property keys.
+	 */
+	public synchronized Map<String, String> getPending(final long inSession, final long inItem) {
+		final Map<String, String> values = new LinkedHashMap<String, String>();
+		collect(writing, inSession, inItem, values);
+		collect(pending, inSession, inItem, values);
+		return values;
+	}
+
+	private static void collect(final Map<UpdateKey, Update> inUpdates, final long inSession, final long inItem, final Map<String, String> outValues) {
+		for (Map.Entry<UpdateKey, Update> entry : inUpdates.entrySet()) {
+			if ((entry.getKey().session == inSession) && (entry.getKey().item == inItem)) {
+				outValues.put(entry.getValue().key, entry.getValue().value);
+			}
+		}
+	}
+
+	/**
+	 * Writes all pending updates with a single save and returns false if
+	 * the save failed. Failed updates stay pending.
+	 */
+	public boolean flush() {
+		synchronized (flushLock) {
+			final Map<UpdateKey, Update> updates;
+			synchronized (this) {
+				if (pending.isEmpty()) {
+					return true;
+				}
+				updates = pending;
+				writing = pending;
+				pending = new LinkedHashMap<UpdateKey, Update>();
+			}
+			boolean written = false;
+			try {
+				written = write(updates);
+				return written;
+			} finally {
+				synchronized (this) {
+					if (!written) {
+						restore(updates);
+					}
+					writing = new LinkedHashMap<UpdateKey, Update>();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops the pending updates of the sessions. A flush that is writing is
+	 * completed first, so no update of the sessions is written afterwards.
+	 */
+	public void discard(final Collection<Long> inSessions) {
+		synchronized (flushLock) {
+			synchronized (this) {
+				final Iterator<UpdateKey> keys = pending.keySet().iterator();
+				while (keys.hasNext()) {
+					if (inSessions.contains(keys.next().session)) {
+						keys.remove();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Puts updates back in front of the pending ones, which are newer.
+	 */
+	private void restore(final Map<UpdateKey, Update> inUpdates) {
+		if (!inUpdates.isEmpty()) {
+			final Map<UpdateKey, Update> restored = new LinkedHashMap<UpdateKey, Update>(inUpdates);
+			restored.putAll(pending);
+			pending = restored;
+		}
+	}
+
+	/**
+	 * Stops the interval flushes and writes what is still pending. Returns
+	 * false if the pending updates could not be written; they are kept.
+	 */
+	public boolean close() {
+		scheduler.shutdown();
+		return flush();
+	}
+
+	private boolean write(final Map<UpdateKey, Update> inUpdates) {
+		final SystemModel ta = SystemModel.createEmpty();
+		final Map<UpdateKey, SessionState> newSessionStates = new HashMap<UpdateKey, SessionState>();
+		final List<PropertyState> newPropertyStates = new ArrayList<PropertyState>();
+		final List<SessionState> newPropertySessionStates = new ArrayList<SessionState>();
+		final List<UpdateKey> changedKeys = new ArrayList<UpdateKey>();
+		final List<PropertyState> changedPropertyStates = new ArrayList<PropertyState>();
+		for (Map.Entry<UpdateKey, Update> entry : inUpdates.entrySet()) {
+			final UpdateKey key = entry.getKey();
+			final Update update = entry.getValue();
+			final PropertyState foundPropertyState = sessionStates.findPropertyState(key.session, key.item, update.key);
+			if (foundPropertyState != null) {
+				final PropertyState changedPropertyState = foundPropertyState.copy();
+				changedPropertyState.setPropertyValue(update.value);
+				changedPropertyState.setLastUpdated(update.lastUpdated);
+				ta.addPropertyState(changedPropertyState);
+				changedKeys.add(key);
+				changedPropertyStates.add(changedPropertyState);
+			} else {
+				final UpdateKey itemKey = new UpdateKey(key.session, key.item, null);
+				SessionState sessionStateCI = sessionStates.findSessionState(key.session, key.item);
+				if (sessionStateCI == null) {
+					sessionStateCI = newSessionStates.get(itemKey);
+				}
+				if (sessionStateCI == null) {
+					sessionStateCI = SessionState.generate();
+					sessionStateCI.setApplicationSession(key.session);
+					sessionStateCI.setConfigurationItem(key.item);
+					ta.addSessionState(sessionStateCI);
+					newSessionStates.put(itemKey, sessionStateCI);
+				}
+				final PropertyState propertyState = PropertyState.generate();
+				propertyState.setSessionState(sessionStateCI.getPrimaryKey());
+				propertyState.setPropertyKey(update.key);
+				propertyState.setPropertyValue(update.value);
+				propertyState.setLastUpdated(update.lastUpdated);
+				ta.addPropertyState(propertyState);
+				newPropertyStates.add(propertyState);
+				newPropertySessionStates.add(sessionStateCI);
+			}
+		}
+		if (index.save(ta)) {
+			for (int i = 0; i < changedPropertyStates.size(); i++) {
+				sessionStates.replacePropertyState(changedKeys.get(i).session, changedKeys.get(i).item, changedPropertyStates.get(i));
+			}
+			for (SessionState sessionState : newSessionStates.values()) {
+				sessionStates.addSessionState(sessionState);
+			}
+			for (int i = 0; i < newPropertyStates.size(); i++) {
+				sessionStates.addPropertyState(newPropertySessionStates.get(i), newPropertyStates.get(i));
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private static final class Update {
+		private final String key;
+		private String value;
+		private Date lastUpdated;
+
+		private Update(final String inKey, final String inValue) {
+			key = inKey;
+			value = inValue;
+			lastUpdated = new Date();
+		}
+	}
+
+	private static final class UpdateKey {
+		private final long session;
+		private final long item;
+		private final String key;
+
+		private UpdateKey(final long inSession, final long inItem, final String inKey) {
+			session = inSession;
+			item = inItem;
+			key = inKey;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = (int) (session ^ (session >>> 32));
+			hash = hash * 31 + (int) (item ^ (item >>> 32));
+			return hash * 31 + ((key != null) ? key.hashCode() : 0);
+		}
+
+		@Override
+		public boolean equals(final Object inObject) {
+			if (inObject instanceof UpdateKey) {
+				final UpdateKey other = (UpdateKey) inObject;
+				return (session == other.session) && (item == other.item) && ((key != null) ? key.equals(other.key) : (other.key == null));
+			}
+			return false;
+		}
+	}
+}
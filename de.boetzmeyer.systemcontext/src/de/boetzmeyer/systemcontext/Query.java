@@ -0,0 +1,56 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import de.boetzmeyer.systemmodel.Attribute;
+import de.boetzmeyer.systemmodel.Condition;
+import de.boetzmeyer.systemmodel.Operation;
+
+/**
+ * Collects name, foreign key and date filters as conditions for the
+ * IServer.listX(List<Condition>) queries. A database backed server evaluates
+ * them in the database, the local server returns the unfiltered list, so the
+ * callers still check every returned record.
+ */
+final class Query {
+	private final List<Condition> conditions = new ArrayList<Condition>();
+
+	private Query() {
+	}
+
+	public static Query create() {
+		return new Query();
+	}
+
+	public Query named(final Attribute inAttribute, final String inName) {
+		if (inName != null) {
+			conditions.add(Condition.createString(Operation.EQUALS, inAttribute, inName));
+		}
+		return this;
+	}
+
+	public Query references(final Attribute inAttribute, final long inPrimaryKey) {
+		conditions.add(Condition.createLong(Operation.EQUALS, inAttribute, inPrimaryKey));
+		return this;
+	}
+
+	public Query after(final Attribute inAttribute, final Date inDate) {
+		if (inDate != null) {
+			conditions.add(Condition.createDate(Operation.GREATER, inAttribute, inDate));
+		}
+		return this;
+	}
+
+	public Query before(final Attribute inAttribute, final Date inDate) {
+		if (inDate != null) {
+			conditions.add(Condition.createDate(Operation.SMALLER, inAttribute, inDate));
+		}
+		return this;
+	}
+
+	public List<Condition> toConditions() {
+		return new ArrayList<Condition>(conditions);
+	}
+}
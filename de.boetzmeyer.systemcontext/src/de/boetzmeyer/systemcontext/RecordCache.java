@@ -0,0 +1,80 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.boetzmeyer.systemmodel.IRecordable;
+
+/**
+ * Read-through cache of the records of one type by primary key. The cache
+ * holds at most its capacity of records and evicts the least recently used
+ * one beyond it. Records that are not found are not cached, so a record added
+ * later is found on the next lookup. Every save of the context invalidates
+ * the records it writes, and so do the deletes of computers and sessions; a
+ * capacity of 0 disables the cache. Records saved past the context are not
+ * seen until they are evicted.
+ * <p>
+ * A cached record is the instance handed to every caller, as the local
+ * server does with its own records. Callers must not change it but change a
+ * copy and save that.
+ */
+abstract class RecordCache<T extends IRecordable> {
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final Map<Long, T> records = new LinkedHashMap<Long, T>(16, 0.75f, true);
+	private int capacity = DEFAULT_CAPACITY;
+	private long invalidations;
+
+	protected abstract T load(long inPrimaryKey);
+
+	public T get(final long inPrimaryKey) {
+		final long loadedAfter;
+		synchronized (this) {
+			final T record = records.get(inPrimaryKey);
+			if (record != null) {
+				return record;
+			}
+			loadedAfter = invalidations;
+		}
+		final T record = load(inPrimaryKey);
+		if (record != null) {
+			synchronized (this) {
+				// a record invalidated during the load may be loaded stale
+				if ((capacity > 0) && (invalidations == loadedAfter)) {
+					records.put(inPrimaryKey, record);
+					evict();
+				}
+			}
+		}
+		return record;
+	}
+
+	public synchronized void invalidate(final long inPrimaryKey) {
+		records.remove(inPrimaryKey);
+		invalidations++;
+	}
+
+	public synchronized void clear() {
+		records.clear();
+		invalidations++;
+	}
+
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized void setCapacity(final int inCapacity) {
+		capacity = Math.max(0, inCapacity);
+		evict();
+	}
+
+	public synchronized int size() {
+		return records.size();
+	}
+
+	private void evict() {
+		while (records.size() > capacity) {
+			records.remove(records.keySet().iterator().next());
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.boetzmeyer.systemmodel.IRecordable;
+
+/**
+ * Open sessions of one session type, grouped by installation and by computer.
+ * Closed sessions are never held, so queries for running sessions cost time
+ * proportional to the running set instead of the whole session history. The
+ * index is loaded lazily and kept in sync by the context services.
+ */
+abstract class SessionIndex<T extends IRecordable> {
+	private final Map<Long, Map<Long, T>> sessionsByInstallation = new HashMap<Long, Map<Long, T>>();
+	private final Map<Long, Map<Long, T>> sessionsByComputer = new HashMap<Long, Map<Long, T>>();
+	private final Map<Long, Long> installationsBySession = new HashMap<Long, Long>();
+	private final Map<Long, Long> computersByInstallation = new HashMap<Long, Long>();
+	private boolean loaded;
+
+	protected abstract List<T> loadOpenSessions();
+
+	protected abstract Map<Long, Long> loadComputersByInstallation();
+
+	protected abstract long getInstallation(T inSession);
+
+	public synchronized List<T> getByInstallation(final long inInstallation) {
+		ensureLoaded();
+		return copy(sessionsByInstallation.get(inInstallation));
+	}
+
+	public synchronized List<T> getByComputer(final long inComputer) {
+		ensureLoaded();
+		return copy(sessionsByComputer.get(inComputer));
+	}
+
+	public synchronized boolean isRunning(final long inInstallation) {
+		ensureLoaded();
+		return sessionsByInstallation.containsKey(inInstallation);
+	}
+
+	public synchronized boolean contains(final long inSession) {
+		ensureLoaded();
+		return installationsBySession.containsKey(inSession);
+	}
+
+	public synchronized void add(final T inSession, final long inComputer) {
+		if ((inSession != null) && loaded) {
+			remove(inSession.getPrimaryKey());
+			final long installation = getInstallation(inSession);
+			computersByInstallation.put(installation, inComputer);
+			put(inSession, installation, inComputer);
+		}
+	}
+
+	public synchronized void remove(final long inSession) {
+		final Long installation = installationsBySession.remove(inSession);
+		if (installation != null) {
+			erase(sessionsByInstallation, installation, inSession);
+			final Long computer = computersByInstallation.get(installation);
+			if (computer != null) {
+				erase(sessionsByComputer, computer, inSession);
+			}
+		}
+	}
+
+	public synchronized void removeInstallation(final long inInstallation) {
+		final Map<Long, T> sessions = sessionsByInstallation.get(inInstallation);
+		if (sessions != null) {
+			for (Long session : new ArrayList<Long>(sessions.keySet())) {
+				remove(session);
+			}
+		}
+		computersByInstallation.remove(inInstallation);
+	}
+
+	private void ensureLoaded() {
+		if (!loaded) {
+			computersByInstallation.putAll(loadComputersByInstallation());
+			final List<T> sessions = loadOpenSessions();
+			for (T session : sessions) {
+				if (session != null) {
+					final long installation = getInstallation(session);
+					final Long computer = computersByInstallation.get(installation);
+					put(session, installation, (computer != null) ? computer.longValue() : 0L);
+				}
+			}
+			loaded = true;
+		}
+	}
+
+	private void put(final T inSession, final long inInstallation, final long inComputer) {
+		insert(sessionsByInstallation, inInstallation, inSession);
+		insert(sessionsByComputer, inComputer, inSession);
+		installationsBySession.put(inSession.getPrimaryKey(), inInstallation);
+	}
+
+	private void insert(final Map<Long, Map<Long, T>> inGroups, final long inGroup, final T inSession) {
+		Map<Long, T> sessions = inGroups.get(inGroup);
+		if (sessions == null) {
+			sessions = new LinkedHashMap<Long, T>();
+			inGroups.put(inGroup, sessions);
+		}
+		sessions.put(inSession.getPrimaryKey(), inSession);
+	}
+
+	private void erase(final Map<Long, Map<Long, T>> inGroups, final long inGroup, final long inSession) {
+		final Map<Long, T> sessions = inGroups.get(inGroup);
+		if (sessions != null) {
+			sessions.remove(inSession);
+			if (sessions.isEmpty()) {
+				inGroups.remove(inGroup);
+			}
+		}
+	}
+
+	private List<T> copy(final Map<Long, T> inSessions) {
+		if (inSessions != null) {
+			return new ArrayList<T>(inSessions.values());
+		}
+		return new ArrayList<T>();
+	}
+}
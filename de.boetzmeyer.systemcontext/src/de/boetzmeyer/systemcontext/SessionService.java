@@ -9,8 +9,10 @@ import de.boetzmeyer.systemmodel.Computer;
 import de.boetzmeyer.systemmodel.ConfigurationItem;
 import de.boetzmeyer.systemmodel.DatabaseInstallation;
 import de.boetzmeyer.systemmodel.DatabaseSession;
+import de.boetzmeyer.systemmodel.Infrastructure;
 import de.boetzmeyer.systemmodel.PropertyState;
 import de.boetzmeyer.systemmodel.SessionState;
+import de.boetzmeyer.systemmodel.SystemConfig;
 import de.boetzmeyer.systemmodel.SystemModel;
 
 public interface SessionService {
@@ -31,14 +33,45 @@ public interface SessionService {
 	boolean updatePropertyState(String inPropertyKey, String inPropertyValue, ConfigurationItem inConfigurationItem,
 			ApplicationSession inApplicationSession);
 
+	/**
+	 * Updates an existing property state only if its server replication
+	 * version is still inExpectedVersion. The version is checked against the
+	 * writers of this JVM only; neither server checks it on save.
+	 */
+	UpdateResult<PropertyState> compareAndSetPropertyState(String inPropertyKey, String inPropertyValue, ConfigurationItem inConfigurationItem,
+			ApplicationSession inApplicationSession, long inExpectedVersion);
+
 	Object getPropertyState(String inPropertyKey, ConfigurationItem inConfigurationItem,
 			ApplicationSession inApplicationSession);
 
 	Map<String, String> getItemState(ConfigurationItem inConfigurationItem, ApplicationSession inApplicationSession);
 
+	/**
+	 * Buffers property state updates and writes them with one save per
+	 * interval or whenever inMaxPendingUpdates distinct properties are
+	 * pending. Repeated updates of a property are coalesced, and item states
+	 * include the buffered values.
+	 */
+	void enableWriteBehind(long inFlushIntervalMillis, int inMaxPendingUpdates);
+
+	/**
+	 * Writes the pending updates and disables write-behind. If they cannot be
+	 * written, write-behind stays enabled without interval flushes and false
+	 * is returned.
+	 */
+	boolean disableWriteBehind();
+
+	boolean flush();
+
 	List<PropertyState> getConfigurationItemState(ConfigurationItem inConfigurationItem,
 			ApplicationSession inApplicationSession);
 
+	List<SessionWave> startSystem(SystemConfig inSystem);
+
+	List<SessionWave> shutdownSystem(SystemConfig inSystem);
+
+	List<SessionWave> shutdownInfrastructure(Infrastructure inInfrastructure);
+
 	void shutdown(ApplicationSession inAppSession);
 
 	List<ApplicationSession> getRunningApps(Computer inComputer);
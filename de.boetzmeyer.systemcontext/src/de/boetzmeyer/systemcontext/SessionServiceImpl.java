@@ -1,13 +1,16 @@
 package de.boetzmeyer.systemcontext;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import de.boetzmeyer.systemmodel.ApplicationConfig;
 import de.boetzmeyer.systemmodel.ApplicationInstallation;
+import de.boetzmeyer.systemmodel.ApplicationLink;
 import de.boetzmeyer.systemmodel.ApplicationSession;
 import de.boetzmeyer.systemmodel.Computer;
 import de.boetzmeyer.systemmodel.ConfigurationItem;
@@ -15,14 +18,15 @@ import de.boetzmeyer.systemmodel.ConfigurationItemLink;
 import de.boetzmeyer.systemmodel.DatabaseInstallation;
 import de.boetzmeyer.systemmodel.DatabaseSession;
 import de.boetzmeyer.systemmodel.IServer;
+import de.boetzmeyer.systemmodel.Infrastructure;
 import de.boetzmeyer.systemmodel.PropertyState;
 import de.boetzmeyer.systemmodel.SessionState;
+import de.boetzmeyer.systemmodel.SystemConfig;
 import de.boetzmeyer.systemmodel.SystemModel;
 
 final class SessionServiceImpl extends SystemContextService implements SessionService {
-
-	public SessionServiceImpl(final IServer inSystemAccess) {
-		super(inSystemAccess);
+	public SessionServiceImpl(final IServer inSystemAccess, final ContextIndex inIndex) {
+		super(inSystemAccess, inIndex);
 	}
 
 	@Override
@@ -33,7 +37,9 @@ final class SessionServiceImpl extends SystemContextService implements SessionSe
 			final Date now = new Date();
 			databaseSession.setFromDate(now);
 			databaseSession.setToDate(new Date(now.getTime()));
-			databaseSession.save();
+			if (index.save(databaseSession)) {
+				index.getDatabaseSessions().add(databaseSession, inDatabaseInstallation.getComputer());
+			}
 			return databaseSession;
 		}
 		return null;
@@ -44,9 +50,12 @@ final class SessionServiceImpl extends SystemContextService implements SessionSe
 		if (inDatabaseSession != null) {
 			final DatabaseSession foundSession = systemAccess.findByIDDatabaseSession(inDatabaseSession.getPrimaryKey());
 			if (foundSession != null) {
-				foundSession.setToDate(new Date());
-				foundSession.save();
-				return true;
+				final DatabaseSession closedSession = foundSession.copy();
+				closedSession.setToDate(new Date());
+				if (index.save(closedSession)) {
+					index.getDatabaseSessions().remove(closedSession.getPrimaryKey());
+					return true;
+				}
 			}			
 		}
 		return false;
@@ -60,36 +69,172 @@ final class SessionServiceImpl extends SystemContextService implements SessionSe
 			appSession.setApplicationInstallation(inAppInstallation.getPrimaryKey());
 			appSession.setFromDate(now);
 			appSession.setToDate(new Date(now.getTime()));
-			appSession.save();
+			if (index.save(appSession)) {
+				index.getAppSessions().add(appSession, inAppInstallation.getComputer());
+			}
 			return appSession;
 		}
 		return null;
 	}
 
+	@Override
+	public List<SessionWave> startSystem(final SystemConfig inSystem) {
+		final List<SessionWave> waves = new ArrayList<SessionWave>();
+		if (inSystem != null) {
+			final Map<Long, ApplicationConfig> apps = getSystemApps(Collections.singletonList(inSystem));
+			final List<List<Long>> levels = getDependencyLevels(apps);
+			for (int level = 0; level < levels.size(); level++) {
+				final long start = System.nanoTime();
+				final List<ApplicationConfig> waveApps = new ArrayList<ApplicationConfig>();
+				final List<ApplicationSession> waveSessions = new ArrayList<ApplicationSession>();
+				final List<ApplicationInstallation> waveInstallations = new ArrayList<ApplicationInstallation>();
+				final SystemModel systemModel = SystemModel.createEmpty();
+				final Date now = new Date();
+				for (Long appKey : levels.get(level)) {
+					waveApps.add(apps.get(appKey));
+					final List<ApplicationInstallation> installations = systemAccess.referencesApplicationInstallationByApplicationConfig(appKey);
+					for (ApplicationInstallation installation : installations) {
+						if ((installation != null) && !index.getAppSessions().isRunning(installation.getPrimaryKey())) {
+							final ApplicationSession appSession = ApplicationSession.generate();
+							appSession.setApplicationInstallation(installation.getPrimaryKey());
+							appSession.setFromDate(now);
+							appSession.setToDate(new Date(now.getTime()));
+							systemModel.addApplicationSession(appSession);
+							waveSessions.add(appSession);
+							waveInstallations.add(installation);
+						}
+					}
+				}
+				final boolean started = waveSessions.isEmpty() || index.save(systemModel);
+				if (started) {
+					for (int i = 0; i < waveSessions.size(); i++) {
+						index.getAppSessions().add(waveSessions.get(i), waveInstallations.get(i).getComputer());
+					}
+				} else {
+					waveSessions.clear();
+				}
+				waves.add(new SessionWave(level, waveApps, waveSessions, (System.nanoTime() - start) / 1000000L));
+				if (!started) {
+					break;
+				}
+			}
+		}
+		return waves;
+	}
+
+	@Override
+	public List<SessionWave> shutdownSystem(final SystemConfig inSystem) {
+		if (inSystem != null) {
+			return shutdownApps(getSystemApps(Collections.singletonList(inSystem)));
+		}
+		return new ArrayList<SessionWave>();
+	}
+
+	@Override
+	public List<SessionWave> shutdownInfrastructure(final Infrastructure inInfrastructure) {
+		if (inInfrastructure != null) {
+			return shutdownApps(getSystemApps(systemAccess.referencesSystemConfigByInfrastructure(inInfrastructure.getPrimaryKey())));
+		}
+		return new ArrayList<SessionWave>();
+	}
+
+	/**
+	 * Closes the running sessions of the applications, dependents before the
+	 * applications they depend on. The sessions of one dependency level are
+	 * closed with a single save.
+	 */
+	private List<SessionWave> shutdownApps(final Map<Long, ApplicationConfig> inApps) {
+		final List<SessionWave> waves = new ArrayList<SessionWave>();
+		final List<List<Long>> levels = getDependencyLevels(inApps);
+		for (int level = levels.size() - 1; level >= 0; level--) {
+			final long start = System.nanoTime();
+			final List<ApplicationConfig> waveApps = new ArrayList<ApplicationConfig>();
+			final List<ApplicationSession> waveSessions = new ArrayList<ApplicationSession>();
+			final SystemModel systemModel = SystemModel.createEmpty();
+			final Date now = new Date();
+			for (Long appKey : levels.get(level)) {
+				waveApps.add(inApps.get(appKey));
+				final List<ApplicationInstallation> installations = systemAccess.referencesApplicationInstallationByApplicationConfig(appKey);
+				for (ApplicationInstallation installation : installations) {
+					if (installation != null) {
+						for (ApplicationSession activeSession : getActiveSessions(installation)) {
+							// the indexed session stays open until the save succeeded
+							final ApplicationSession appSession = activeSession.copy();
+							appSession.setToDate(now);
+							systemModel.addApplicationSession(appSession);
+							waveSessions.add(appSession);
+						}
+					}
+				}
+			}
+			final boolean closed = waveSessions.isEmpty() || index.save(systemModel);
+			if (closed) {
+				for (ApplicationSession appSession : waveSessions) {
+					index.closeAppSession(appSession.getPrimaryKey());
+				}
+			} else {
+				waveSessions.clear();
+			}
+			waves.add(new SessionWave(level, waveApps, waveSessions, (System.nanoTime() - start) / 1000000L));
+			if (!closed) {
+				break;
+			}
+		}
+		return waves;
+	}
+
+	private Map<Long, ApplicationConfig> getSystemApps(final List<SystemConfig> inSystems) {
+		final Map<Long, ApplicationConfig> apps = new LinkedHashMap<Long, ApplicationConfig>();
+		for (SystemConfig system : inSystems) {
+			if (system != null) {
+				for (ApplicationConfig app : systemAccess.referencesApplicationConfigBySystemConfig(system.getPrimaryKey())) {
+					if (app != null) {
+						apps.put(app.getPrimaryKey(), app);
+					}
+				}
+			}
+		}
+		return apps;
+	}
+
+	/**
+	 * Groups the applications by their level in the application link graph
+	 * restricted to these applications. Level 0 depends on none of the others,
+	 * applications on a dependency cycle share a level.
+	 */
+	private List<List<Long>> getDependencyLevels(final Map<Long, ApplicationConfig> inApps) {
+		final ComponentAnalyser analyser = new ComponentAnalyser();
+		for (Long app : inApps.keySet()) {
+			analyser.addNode(app);
+			for (ApplicationLink appLink : index.getAppLinks().getOutgoing(app)) {
+				if (inApps.containsKey(appLink.getDestination())) {
+					analyser.addLink(app, appLink.getDestination());
+				}
+			}
+		}
+		return analyser.analyse().getLevels();
+	}
+
 	@Override
 	public void shutdown(ApplicationSession inAppSession) {
 		if (inAppSession != null) {
 			final ApplicationSession foundSession = systemAccess.findByIDApplicationSession(inAppSession.getPrimaryKey());
 			if (foundSession != null) {
-				foundSession.setToDate(new Date());
-				foundSession.save();
+				final ApplicationSession closedSession = foundSession.copy();
+				closedSession.setToDate(new Date());
+				if (index.save(closedSession)) {
+					index.closeAppSession(closedSession.getPrimaryKey());
+				}
 			}			
 		}
 	}
 
 	@Override
 	public List<ApplicationSession> getActiveSessions(ApplicationInstallation inApplicationInstallation) {
-		final List<ApplicationSession> activeSessions = new ArrayList<ApplicationSession>();
-		final List<ApplicationSession> sessions = systemAccess.referencesApplicationSessionByApplicationInstallation(inApplicationInstallation.getPrimaryKey());
-		final Date now = new Date();
-		for (ApplicationSession session : sessions) {
-			if ((now.after(session.getFromDate()))) {
-				if (session.getFromDate().equals(session.getToDate())) {
-					activeSessions.add(session);
-				}
-			}
+		if (inApplicationInstallation != null) {
+			return getStartedSessions(index.getAppSessions().getByInstallation(inApplicationInstallation.getPrimaryKey()));
 		}
-		return activeSessions;
+		return new ArrayList<ApplicationSession>();
 	}
 
 	@Override
@@ -105,41 +250,78 @@ final class SessionServiceImpl extends SystemContextService implements SessionSe
 	@Override
 	public boolean updatePropertyState(String inPropertyKey, String inPropertyValue,
 			ConfigurationItem inConfigurationItem, ApplicationSession inApplicationSession) {
-		SessionState sessionStateCI = null;
-		final List<PropertyState> foundPropertyStates = new ArrayList<PropertyState>();
-		final List<SessionState> sessionStates = getSessionStates(inApplicationSession);
-		for (SessionState sessionState : sessionStates) {
-			if (sessionState != null) {
-				if (sessionState.getConfigurationItem() == inConfigurationItem.getPrimaryKey()) {
-					sessionStateCI = sessionState;
-					foundPropertyStates.addAll(systemAccess.referencesPropertyStateBySessionState(sessionState.getPrimaryKey()));
-					break;
+		final PropertyStateWriter writer = index.getPropertyStateWriter();
+		if ((writer != null) && (inPropertyKey != null)) {
+			return writer.put(inApplicationSession.getPrimaryKey(), inConfigurationItem.getPrimaryKey(), inPropertyKey, inPropertyValue);
+		}
+		final SessionStateIndex sessionStates = index.getSessionStates();
+		final long session = inApplicationSession.getPrimaryKey();
+		final long item = inConfigurationItem.getPrimaryKey();
+		synchronized (index.getVersionLocks().getLock(session)) {
+			final PropertyState foundPropertyState = sessionStates.findPropertyState(session, item, inPropertyKey);
+			if (foundPropertyState != null) {
+				final PropertyState changedPropertyState = foundPropertyState.copy();
+				changedPropertyState.setPropertyValue(inPropertyValue);
+				changedPropertyState.setLastUpdated(new Date());
+				if (index.save(changedPropertyState)) {
+					sessionStates.replacePropertyState(session, item, changedPropertyState);
+					return true;
 				}
+				return false;
+			}
+			final SystemModel ta = SystemModel.createEmpty();
+			SessionState sessionStateCI = sessionStates.findSessionState(session, item);
+			if (sessionStateCI == null) {
+				sessionStateCI = SessionState.generate();
+				sessionStateCI.setApplicationSession(inApplicationSession.getPrimaryKey());
+				sessionStateCI.setConfigurationItem(inConfigurationItem.getPrimaryKey());
+				ta.addSessionState(sessionStateCI);
+			}
+			final PropertyState propertyState = PropertyState.generate();
+			propertyState.setSessionState(sessionStateCI.getPrimaryKey());
+			propertyState.setPropertyKey(inPropertyKey);
+			propertyState.setPropertyValue(inPropertyValue);
+			propertyState.setLastUpdated(new Date());
+			ta.addPropertyState(propertyState);
+			if (index.save(ta)) {
+				sessionStates.addSessionState(sessionStateCI);
+				sessionStates.addPropertyState(sessionStateCI, propertyState);
+				return true;
 			}
+			return false;
 		}
-		for (PropertyState propertyState : foundPropertyStates) {
+	}
+
+	@Override
+	public UpdateResult<PropertyState> compareAndSetPropertyState(final String inPropertyKey, final String inPropertyValue,
+			final ConfigurationItem inConfigurationItem, final ApplicationSession inApplicationSession, final long inExpectedVersion) {
+		if ((inPropertyKey != null) && (inConfigurationItem != null) && (inApplicationSession != null)) {
+			flush();
+			final long session = inApplicationSession.getPrimaryKey();
+			final long item = inConfigurationItem.getPrimaryKey();
+			final PropertyState propertyState = index.getSessionStates().findPropertyState(session, item, inPropertyKey);
 			if (propertyState != null) {
-				if (propertyState.getPropertyKey().equalsIgnoreCase(inPropertyKey)) {
-					propertyState.setPropertyValue(inPropertyValue);
-					propertyState.setLastUpdated(new Date());
-					return propertyState.save();
-				}
+				return index.getVersionLocks().compareAndSet(session, propertyState.getPrimaryKey(), inExpectedVersion, new VersionLocks.Change<PropertyState>() {
+					@Override
+					protected PropertyState load(final long inPrimaryKey) {
+						final PropertyState foundPropertyState = systemAccess.findByIDPropertyState(inPrimaryKey);
+						return (foundPropertyState != null) ? foundPropertyState.copy() : null;
+					}
+
+					@Override
+					protected void apply(final PropertyState inPropertyState) {
+						inPropertyState.setPropertyValue(inPropertyValue);
+						inPropertyState.setLastUpdated(new Date());
+					}
+
+					@Override
+					protected void saved(final PropertyState inPropertyState) {
+						index.getSessionStates().replacePropertyState(session, item, inPropertyState);
+					}
+				});
 			}
 		}
-		final SystemModel ta = SystemModel.createEmpty();
-		if (sessionStateCI == null) {
-			sessionStateCI = SessionState.generate();
-			sessionStateCI.setApplicationSession(inApplicationSession.getPrimaryKey());
-			sessionStateCI.setConfigurationItem(inConfigurationItem.getPrimaryKey());
-			ta.addSessionState(sessionStateCI);
-		}
-		final PropertyState propertyState = PropertyState.generate();
-		propertyState.setSessionState(sessionStateCI.getPrimaryKey());
-		propertyState.setPropertyKey(inPropertyKey);
-		propertyState.setPropertyValue(inPropertyValue);
-		propertyState.setLastUpdated(new Date());
-		ta.addPropertyState(propertyState);
-		return ta.save();
+		return UpdateResult.notFound();
 	}
 
 	@Override
@@ -159,53 +341,93 @@ final class SessionServiceImpl extends SystemContextService implements SessionSe
 				itemState.put(propertyState.getPropertyKey(), propertyState.getPropertyValue());
 			}
 		}
+		final PropertyStateWriter writer = index.getPropertyStateWriter();
+		if (writer != null) {
+			addPending(itemState, writer.getPending(inApplicationSession.getPrimaryKey(), inConfigurationItem.getPrimaryKey()));
+		}
 		return itemState;
 	}
 
-	@Override
-	public List<PropertyState> getConfigurationItemState(ConfigurationItem inConfigurationItem,
-			ApplicationSession inApplicationSession) {
-		final List<SessionState> sessionStates = getSessionStates(inApplicationSession);
-		for (SessionState sessionState : sessionStates) {
-			if (sessionState != null) {
-				if (sessionState.getConfigurationItem() == inConfigurationItem.getPrimaryKey()) {
-					return systemAccess.referencesPropertyStateBySessionState(sessionState.getPrimaryKey());
+	/**
+	 * Overlays the values that are not written yet, under the key the item
+	 * state already uses for the property.
+	 */
+	private static void addPending(final Map<String, String> inItemState, final Map<String, String> inPending) {
+		if (!inPending.isEmpty()) {
+			final Map<String, String> keys = new HashMap<String, String>();
+			for (String key : inItemState.keySet()) {
+				if (key != null) {
+					keys.put(NameIndex.normalize(key), key);
 				}
 			}
+			for (Map.Entry<String, String> entry : inPending.entrySet()) {
+				final String key = keys.get(NameIndex.normalize(entry.getKey()));
+				inItemState.put((key != null) ? key : entry.getKey(), entry.getValue());
+			}
 		}
-		return new ArrayList<PropertyState>();
 	}
-	
-	private List<ApplicationInstallation> getInstallations(Computer inComputer) {
-		if (inComputer != null) {
-			return systemAccess.referencesApplicationInstallationByComputer(inComputer.getPrimaryKey());
+
+	@Override
+	public synchronized void enableWriteBehind(final long inFlushIntervalMillis, final int inMaxPendingUpdates) {
+		final PropertyStateWriter previousWriter = index.getPropertyStateWriter();
+		final PropertyStateWriter writer = new PropertyStateWriter(index, inFlushIntervalMillis, inMaxPendingUpdates);
+		index.setPropertyStateWriter(writer);
+		if ((previousWriter != null) && !previousWriter.close()) {
+			writer.adopt(previousWriter);
 		}
-		return new ArrayList<ApplicationInstallation>();
 	}
 
+	@Override
+	public synchronized boolean disableWriteBehind() {
+		final PropertyStateWriter writer = index.getPropertyStateWriter();
+		index.setPropertyStateWriter(null);
+		if ((writer != null) && !writer.close()) {
+			// the updates that could not be written stay visible and are retried by flush
+			index.setPropertyStateWriter(writer);
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean flush() {
+		final PropertyStateWriter writer = index.getPropertyStateWriter();
+		if (writer != null) {
+			return writer.flush();
+		}
+		return true;
+	}
+
+	@Override
+	public List<PropertyState> getConfigurationItemState(ConfigurationItem inConfigurationItem,
+			ApplicationSession inApplicationSession) {
+		return index.getSessionStates().getPropertyStates(inApplicationSession.getPrimaryKey(), inConfigurationItem.getPrimaryKey());
+	}
+	
 	@Override
 	public List<ApplicationSession> getRunningApps(Computer inComputer) {
-		final List<ApplicationInstallation> installations = getInstallations(inComputer);
-		final List<ApplicationSession> runningSessions = new ArrayList<ApplicationSession>();
+		if (inComputer != null) {
+			return getStartedSessions(index.getAppSessions().getByComputer(inComputer.getPrimaryKey()));
+		}
+		return new ArrayList<ApplicationSession>();
+	}
+
+	private List<ApplicationSession> getStartedSessions(final List<ApplicationSession> inOpenSessions) {
+		final List<ApplicationSession> startedSessions = new ArrayList<ApplicationSession>(inOpenSessions.size());
 		final Date now = new Date();
-		for (ApplicationInstallation installation : installations) {
-			final List<ApplicationSession> sessions = systemAccess.referencesApplicationSessionByApplicationInstallation(installation.getPrimaryKey());
-			for (ApplicationSession session : sessions) {
-				if ((now.after(session.getFromDate()))) {
-					if (session.getFromDate().equals(session.getToDate())) {
-						runningSessions.add(session);
-					}
-				}
+		for (ApplicationSession session : inOpenSessions) {
+			if (!now.before(session.getFromDate())) {
+				startedSessions.add(session);
 			}
 		}
-		return runningSessions;
+		return startedSessions;
 	}
 
 	@Override
 	public SystemModel getAppSessionModel(ApplicationSession inAppSession) {
 		final SystemModel systemModel = SystemModel.createEmpty();
 		if (inAppSession != null) {
-			final ApplicationSession appSession = systemAccess.findByIDApplicationSession(inAppSession.getPrimaryKey());
+			final ApplicationSession appSession = index.getAppSessionCache().get(inAppSession.getPrimaryKey());
 			if (appSession != null) {
 				final ApplicationInstallation appInstallation = appSession.getApplicationInstallationRef();
 				if (appInstallation != null) {
@@ -227,7 +449,7 @@ final class SessionServiceImpl extends SystemContextService implements SessionSe
 	private SystemModel getAppConfigurationModel(ApplicationConfig inApp) {
 		final SystemModel systemModel = SystemModel.createEmpty();
 		if (inApp != null) {
-			final ApplicationConfig app = systemAccess.findByIDApplicationConfig(inApp.getPrimaryKey());
+			final ApplicationConfig app = index.getAppCache().get(inApp.getPrimaryKey());
 			if (app != null) {
 				systemModel.addApplicationConfig(app);
 				final List<ConfigurationItem> configurationItems = systemAccess.referencesConfigurationItemByApplicationConfig(app.getPrimaryKey());
@@ -247,41 +469,34 @@ final class SessionServiceImpl extends SystemContextService implements SessionSe
 	public void shutdown(Computer inComputer) {
 		final SystemModel systemModel = SystemModel.createEmpty();
 		final Date now = new Date();
+		// the indexed sessions stay open until the save succeeded
 		final List<ApplicationSession> openAppSessions = getRunningApps(inComputer);
 		for (ApplicationSession applicationSession : openAppSessions) {
-			applicationSession.setToDate(now);
-			systemModel.addApplicationSession(applicationSession);
+			final ApplicationSession closedSession = applicationSession.copy();
+			closedSession.setToDate(now);
+			systemModel.addApplicationSession(closedSession);
 		}
 		final List<DatabaseSession> openDbSessions = getRunningDatabases(inComputer);
 		for (DatabaseSession databaseSession : openDbSessions) {
-			databaseSession.setToDate(now);
-			systemModel.addDatabaseSession(databaseSession);
+			final DatabaseSession closedSession = databaseSession.copy();
+			closedSession.setToDate(now);
+			systemModel.addDatabaseSession(closedSession);
 		}
-		systemModel.save();
-	}
-
-	private List<DatabaseSession> getRunningDatabases(final Computer inComputer) {
-		final List<DatabaseInstallation> installations = getDatabaseInstallations(inComputer);
-		final List<DatabaseSession> runningSessions = new ArrayList<DatabaseSession>();
-		final Date now = new Date();
-		for (DatabaseInstallation installation : installations) {
-			final List<DatabaseSession> sessions = systemAccess.referencesDatabaseSessionByDatabaseInstallation(installation.getPrimaryKey());
-			for (DatabaseSession session : sessions) {
-				if ((now.after(session.getFromDate()))) {
-					if (session.getFromDate() == session.getToDate()) {
-						runningSessions.add(session);
-					}
-				}
+		if (index.save(systemModel)) {
+			for (ApplicationSession applicationSession : openAppSessions) {
+				index.closeAppSession(applicationSession.getPrimaryKey());
+			}
+			for (DatabaseSession databaseSession : openDbSessions) {
+				index.getDatabaseSessions().remove(databaseSession.getPrimaryKey());
 			}
 		}
-		return runningSessions;
 	}
 
-	private List<DatabaseInstallation> getDatabaseInstallations(final Computer inComputer) {
+	private List<DatabaseSession> getRunningDatabases(final Computer inComputer) {
 		if (inComputer != null) {
-			return systemAccess.referencesDatabaseInstallationByComputer(inComputer.getPrimaryKey());
+			return index.getDatabaseSessions().getByComputer(inComputer.getPrimaryKey());
 		}
-		return new ArrayList<DatabaseInstallation>();
+		return new ArrayList<DatabaseSession>();
 	}
 	
 	@Override
@@ -292,7 +507,9 @@ final class SessionServiceImpl extends SystemContextService implements SessionSe
 			dbSession.setDatabaseInstallation(inDbInstallation.getPrimaryKey());
 			dbSession.setFromDate(now);
 			dbSession.setToDate(new Date(now.getTime()));
-			dbSession.save();
+			if (index.save(dbSession)) {
+				index.getDatabaseSessions().add(dbSession, inDbInstallation.getComputer());
+			}
 			return dbSession;
 		}
 		return null;
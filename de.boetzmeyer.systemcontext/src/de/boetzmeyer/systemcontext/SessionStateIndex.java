@@ -0,0 +1,126 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.boetzmeyer.systemmodel.ApplicationSession;
+import de.boetzmeyer.systemmodel.IServer;
+import de.boetzmeyer.systemmodel.PropertyState;
+import de.boetzmeyer.systemmodel.SessionState;
+
+/**
+ * Session states of application sessions by configuration item, and their
+ * property states by case-insensitive property key. The states of an open
+ * session are loaded on first access and dropped when the session ends; the
+ * states of closed sessions are loaded on every access and never held.
+ */
+final class SessionStateIndex {
+	private final IServer systemAccess;
+	private final SessionIndex<ApplicationSession> openSessions;
+	private final Map<Long, Map<Long, ItemState>> statesBySession = new HashMap<Long, Map<Long, ItemState>>();
+
+	public SessionStateIndex(final IServer inSystemAccess, final SessionIndex<ApplicationSession> inOpenSessions) {
+		systemAccess = inSystemAccess;
+		openSessions = inOpenSessions;
+	}
+
+	public synchronized SessionState findSessionState(final long inSession, final long inItem) {
+		final ItemState itemState = getItemStates(inSession).get(inItem);
+		return (itemState != null) ? itemState.sessionState : null;
+	}
+
+	public synchronized PropertyState findPropertyState(final long inSession, final long inItem, final String inKey) {
+		final ItemState itemState = getItemStates(inSession).get(inItem);
+		if ((itemState != null) && (inKey != null)) {
+			return itemState.properties.get(NameIndex.normalize(inKey));
+		}
+		return null;
+	}
+
+	public synchronized List<PropertyState> getPropertyStates(final long inSession, final long inItem) {
+		final ItemState itemState = getItemStates(inSession).get(inItem);
+		if (itemState != null) {
+			return new ArrayList<PropertyState>(itemState.properties.values());
+		}
+		return new ArrayList<PropertyState>();
+	}
+
+	public synchronized void addSessionState(final SessionState inSessionState) {
+		final Map<Long, ItemState> itemStates = statesBySession.get(inSessionState.getApplicationSession());
+		if ((itemStates != null) && !itemStates.containsKey(inSessionState.getConfigurationItem())) {
+			itemStates.put(inSessionState.getConfigurationItem(), new ItemState(inSessionState));
+		}
+	}
+
+	public synchronized void addPropertyState(final SessionState inSessionState, final PropertyState inPropertyState) {
+		final Map<Long, ItemState> itemStates = statesBySession.get(inSessionState.getApplicationSession());
+		if (itemStates != null) {
+			final ItemState itemState = itemStates.get(inSessionState.getConfigurationItem());
+			if (itemState != null) {
+				itemState.put(inPropertyState);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the held property state by a newer copy of the same record.
+	 */
+	public synchronized void replacePropertyState(final long inSession, final long inItem, final PropertyState inPropertyState) {
+		final Map<Long, ItemState> itemStates = statesBySession.get(inSession);
+		if ((itemStates != null) && (inPropertyState.getPropertyKey() != null)) {
+			final ItemState itemState = itemStates.get(inItem);
+			if (itemState != null) {
+				itemState.properties.put(NameIndex.normalize(inPropertyState.getPropertyKey()), inPropertyState);
+			}
+		}
+	}
+
+	public synchronized void removeSession(final long inSession) {
+		statesBySession.remove(inSession);
+	}
+
+	private Map<Long, ItemState> getItemStates(final long inSession) {
+		Map<Long, ItemState> itemStates = statesBySession.get(inSession);
+		if (itemStates == null) {
+			itemStates = new HashMap<Long, ItemState>();
+			final List<SessionState> sessionStates = systemAccess.referencesSessionStateByApplicationSession(inSession);
+			for (SessionState sessionState : sessionStates) {
+				if ((sessionState != null) && !itemStates.containsKey(sessionState.getConfigurationItem())) {
+					final ItemState itemState = new ItemState(sessionState);
+					final List<PropertyState> propertyStates = systemAccess.referencesPropertyStateBySessionState(sessionState.getPrimaryKey());
+					for (PropertyState propertyState : propertyStates) {
+						if (propertyState != null) {
+							itemState.put(propertyState);
+						}
+					}
+					itemStates.put(sessionState.getConfigurationItem(), itemState);
+				}
+			}
+			if (openSessions.contains(inSession)) {
+				statesBySession.put(inSession, itemStates);
+			}
+		}
+		return itemStates;
+	}
+
+	private static final class ItemState {
+		private final SessionState sessionState;
+		private final Map<String, PropertyState> properties = new LinkedHashMap<String, PropertyState>();
+
+		private ItemState(final SessionState inSessionState) {
+			sessionState = inSessionState;
+		}
+
+		private void put(final PropertyState inPropertyState) {
+			if (inPropertyState.getPropertyKey() != null) {
+				final String key = NameIndex.normalize(inPropertyState.getPropertyKey());
+				if (!properties.containsKey(key)) {
+					properties.put(key, inPropertyState);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.Collections;
+import java.util.List;
+
+import de.boetzmeyer.systemmodel.ApplicationConfig;
+import de.boetzmeyer.systemmodel.ApplicationSession;
+
+/**
+ * One step of a dependency-ordered start or shutdown: the applications of
+ * one dependency level, the sessions that were opened or closed for them
+ * with a single save, and the time the step took.
+ */
+public final class SessionWave {
+	private final int level;
+	private final List<ApplicationConfig> apps;
+	private final List<ApplicationSession> sessions;
+	private final long durationMillis;
+
+	SessionWave(final int inLevel, final List<ApplicationConfig> inApps, final List<ApplicationSession> inSessions, final long inDurationMillis) {
+		level = inLevel;
+		apps = Collections.unmodifiableList(inApps);
+		sessions = Collections.unmodifiableList(inSessions);
+		durationMillis = inDurationMillis;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public List<ApplicationConfig> getApps() {
+		return apps;
+	}
+
+	public List<ApplicationSession> getSessions() {
+		return sessions;
+	}
+
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+}
@@ -1,5 +1,6 @@
 package de.boetzmeyer.systemcontext;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -15,6 +16,7 @@ import de.boetzmeyer.systemmodel.ConfigurationItem;
 import de.boetzmeyer.systemmodel.DataModel;
 import de.boetzmeyer.systemmodel.DatabaseInstallation;
 import de.boetzmeyer.systemmodel.DatabaseSession;
+import de.boetzmeyer.systemmodel.IRecordable;
 import de.boetzmeyer.systemmodel.IServer;
 import de.boetzmeyer.systemmodel.Infrastructure;
 import de.boetzmeyer.systemmodel.InterfaceDataType;
@@ -42,6 +44,8 @@ public class SystemContext implements ISystemContext {
 	private final InfrastructureService infrastructureService;
 	private final InstallationService installationService;
 	private final SessionService sessionService;
+	private final IServer systemAccess;
+	private final ContextIndex index;
 	
 	public synchronized static ISystemContext aquire() {
 		if (singleton == null) {
@@ -88,12 +92,13 @@ public class SystemContext implements ISystemContext {
 	private SystemContext(final String inPath) {
 		Settings.setLocaleDatabaseDir(inPath);
 		//Settings.setFileAccess(true);
-		final IServer systemAccess = ServerFactory.create();
-		applicationService = new ApplicationServiceImpl(systemAccess);
-		dataModelService = new DataModelServiceImpl(systemAccess);
-		infrastructureService = new InfrastructureServiceImpl(systemAccess);
-		installationService = new InstallationServiceImpl(systemAccess);
-		sessionService = new SessionServiceImpl(systemAccess);
+		systemAccess = ServerFactory.create();
+		index = new ContextIndex(systemAccess, ServerFactory.isFileSource());
+		applicationService = new ApplicationServiceImpl(systemAccess, index);
+		dataModelService = new DataModelServiceImpl(systemAccess, index);
+		infrastructureService = new InfrastructureServiceImpl(systemAccess, index);
+		installationService = new InstallationServiceImpl(systemAccess, index);
+		sessionService = new SessionServiceImpl(systemAccess, index);
 	}
 	
 	private SystemContext(final String inServerName, final int inPort, final String inUser, final String inPassword, final String inDriverClass, final String inDriverProtocol) {
@@ -112,12 +117,29 @@ public class SystemContext implements ISystemContext {
 			Settings.setDriverProtocol(inDriverProtocol);
 		}
 		//Settings.setFileAccess(false);  // TODO
-		final IServer systemAccess = ServerFactory.create();
-		applicationService = new ApplicationServiceImpl(systemAccess);
-		dataModelService = new DataModelServiceImpl(systemAccess);
-		infrastructureService = new InfrastructureServiceImpl(systemAccess);
-		installationService = new InstallationServiceImpl(systemAccess);
-		sessionService = new SessionServiceImpl(systemAccess);
+		systemAccess = ServerFactory.create();
+		index = new ContextIndex(systemAccess, ServerFactory.isFileSource());
+		applicationService = new ApplicationServiceImpl(systemAccess, index);
+		dataModelService = new DataModelServiceImpl(systemAccess, index);
+		infrastructureService = new InfrastructureServiceImpl(systemAccess, index);
+		installationService = new InstallationServiceImpl(systemAccess, index);
+		sessionService = new SessionServiceImpl(systemAccess, index);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#beginWork()
+	 */
+	@Override
+	public UnitOfWork beginWork() {
+		return new UnitOfWork(systemAccess, index);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#setCacheCapacity(java.lang.Class, int)
+	 */
+	@Override
+	public boolean setCacheCapacity(final Class<? extends IRecordable> inRecordType, final int inCapacity) {
+		return index.setCacheCapacity(inRecordType, inCapacity);
 	}
 	
 	/* (non-Javadoc)
@@ -184,6 +206,62 @@ public class SystemContext implements ISystemContext {
 		return infrastructureService.disonnectSystems(inSourceSystem, inTargetSystem);
 	}
 	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#getSystemDependents(de.boetzmeyer.systemmodel.SystemConfig)
+	 */
+	@Override
+	public SystemModel getSystemDependents(final SystemConfig inSystem) {
+		return infrastructureService.getSystemDependents(inSystem);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#getSystemDependents(de.boetzmeyer.systemmodel.SystemConfig, int)
+	 */
+	@Override
+	public SystemModel getSystemDependents(final SystemConfig inSystem, final int inMaxDepth) {
+		return infrastructureService.getSystemDependents(inSystem, inMaxDepth);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#analyseSystemDependencies()
+	 */
+	@Override
+	public ComponentAnalysis analyseSystemDependencies() {
+		return infrastructureService.analyseSystemDependencies();
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#getHopCount(de.boetzmeyer.systemmodel.SystemConfig, de.boetzmeyer.systemmodel.SystemConfig)
+	 */
+	@Override
+	public int getHopCount(final SystemConfig inSource, final SystemConfig inDestination) {
+		return infrastructureService.getHopCount(inSource, inDestination);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#getShortestPath(de.boetzmeyer.systemmodel.SystemConfig, de.boetzmeyer.systemmodel.SystemConfig)
+	 */
+	@Override
+	public List<SystemConfig> getShortestPath(final SystemConfig inSource, final SystemConfig inDestination) {
+		return infrastructureService.getShortestPath(inSource, inDestination);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#getTopology()
+	 */
+	@Override
+	public TopologySnapshot getTopology() {
+		return infrastructureService.getTopology();
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#getStrongestSystemLinks(java.util.List, int)
+	 */
+	@Override
+	public List<SystemLink> getStrongestSystemLinks(final List<SystemConfig> inSystems, final int inMaxConnections) {
+		return infrastructureService.getStrongestSystemLinks(inSystems, inMaxConnections);
+	}
+	
 	/* (non-Javadoc)
 	 * @see de.boetzmeyer.systemcontext.ISystemContext#installDatabase(de.boetzmeyer.systemmodel.DataModel, de.boetzmeyer.systemmodel.Computer)
 	 */
@@ -296,6 +374,62 @@ public class SystemContext implements ISystemContext {
 		return infrastructureService.addNetwork(inNetwork);
 	}
 	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#addSystems(java.util.Collection)
+	 */
+	@Override
+	public BulkResult<SystemConfig> addSystems(final Collection<SystemConfig> inSystems) {
+		return infrastructureService.addSystems(inSystems);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#addComputers(java.util.Collection)
+	 */
+	@Override
+	public BulkResult<Computer> addComputers(final Collection<Computer> inComputers) {
+		return infrastructureService.addComputers(inComputers);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#addNetworks(java.util.Collection)
+	 */
+	@Override
+	public BulkResult<Network> addNetworks(final Collection<Network> inNetworks) {
+		return infrastructureService.addNetworks(inNetworks);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#addApps(java.util.Collection)
+	 */
+	@Override
+	public BulkResult<ApplicationConfig> addApps(final Collection<ApplicationConfig> inApps) {
+		return applicationService.addApps(inApps);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#addDataModels(java.util.Collection)
+	 */
+	@Override
+	public BulkResult<DataModel> addDataModels(final Collection<DataModel> inDataModels) {
+		return dataModelService.addDataModels(inDataModels);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#addModelAttributes(java.util.Collection)
+	 */
+	@Override
+	public BulkResult<ModelAttribute> addModelAttributes(final Collection<ModelAttribute> inModelAttributes) {
+		return dataModelService.addModelAttributes(inModelAttributes);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#addModelEntities(java.util.Collection)
+	 */
+	@Override
+	public BulkResult<ModelEntity> addModelEntities(final Collection<ModelEntity> inModelEntities) {
+		return dataModelService.addModelEntities(inModelEntities);
+	}
+	
 	/* (non-Javadoc)
 	 * @see de.boetzmeyer.systemcontext.ISystemContext#getSystemByName(java.lang.String)
 	 */
@@ -376,6 +510,15 @@ public class SystemContext implements ISystemContext {
 		return sessionService.updatePropertyState(inPropertyKey, inPropertyValue, inConfigurationItem, inApplicationSession);
 	}
 	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#compareAndSetPropertyState(java.lang.String, java.lang.String, de.boetzmeyer.systemmodel.ConfigurationItem, de.boetzmeyer.systemmodel.ApplicationSession, long)
+	 */
+	@Override
+	public UpdateResult<PropertyState> compareAndSetPropertyState(final String inPropertyKey, final String inPropertyValue,
+			final ConfigurationItem inConfigurationItem, final ApplicationSession inApplicationSession, final long inExpectedVersion) {
+		return sessionService.compareAndSetPropertyState(inPropertyKey, inPropertyValue, inConfigurationItem, inApplicationSession, inExpectedVersion);
+	}
+
 	/* (non-Javadoc)
 	 * @see de.boetzmeyer.systemcontext.ISystemContext#getPropertyState(java.lang.String, de.boetzmeyer.systemmodel.ConfigurationItem, de.boetzmeyer.systemmodel.ApplicationSession)
 	 */
@@ -391,6 +534,30 @@ public class SystemContext implements ISystemContext {
 	public Map<String, String> getItemState(final ConfigurationItem inConfigurationItem, final ApplicationSession inApplicationSession) {
 		return sessionService.getItemState(inConfigurationItem, inApplicationSession);
 	}
+
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#enableWriteBehind(long, int)
+	 */
+	@Override
+	public void enableWriteBehind(final long inFlushIntervalMillis, final int inMaxPendingUpdates) {
+		sessionService.enableWriteBehind(inFlushIntervalMillis, inMaxPendingUpdates);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#disableWriteBehind()
+	 */
+	@Override
+	public boolean disableWriteBehind() {
+		return sessionService.disableWriteBehind();
+	}
+
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#flush()
+	 */
+	@Override
+	public boolean flush() {
+		return sessionService.flush();
+	}
 	
 	/* (non-Javadoc)
 	 * @see de.boetzmeyer.systemcontext.ISystemContext#getConfigurationItemState(de.boetzmeyer.systemmodel.ConfigurationItem, de.boetzmeyer.systemmodel.ApplicationSession)
@@ -408,6 +575,14 @@ public class SystemContext implements ISystemContext {
 		return applicationService.findRootItem(inApp);
 	}
 	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#resolveRootItem(de.boetzmeyer.systemmodel.ApplicationConfig)
+	 */
+	@Override
+	public ConfigurationRoot resolveRootItem(final ApplicationConfig inApp) {
+		return applicationService.resolveRootItem(inApp);
+	}
+	
 	/* (non-Javadoc)
 	 * @see de.boetzmeyer.systemcontext.ISystemContext#getAppConfiguration(de.boetzmeyer.systemmodel.ApplicationConfig)
 	 */
@@ -561,6 +736,30 @@ public class SystemContext implements ISystemContext {
 		return infrastructureService.findNetwork(inNetworkName);
 	}
 	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#findComputerByAddress(java.lang.String)
+	 */
+	@Override
+	public Computer findComputerByAddress(final String inIPAddress) {
+		return infrastructureService.findComputerByAddress(inIPAddress);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#getComputersInRange(java.lang.String)
+	 */
+	@Override
+	public List<Computer> getComputersInRange(final String inAddressRange) {
+		return infrastructureService.getComputersInRange(inAddressRange);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#findNetworkByAddress(java.lang.String)
+	 */
+	@Override
+	public Network findNetworkByAddress(final String inIPAddress) {
+		return infrastructureService.findNetworkByAddress(inIPAddress);
+	}
+	
 	/* (non-Javadoc)
 	 * @see de.boetzmeyer.systemcontext.ISystemContext#getComputers(java.lang.String)
 	 */
@@ -641,6 +840,22 @@ public class SystemContext implements ISystemContext {
 		return installationService.getInstallationsSince(inComputer, inSince);
 	}
 	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#getInstallationsSince(java.util.Date)
+	 */
+	@Override
+	public List<ApplicationInstallation> getInstallationsSince(final Date inSince) {
+		return installationService.getInstallationsSince(inSince);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#getInstallationsBetween(java.util.Date, java.util.Date)
+	 */
+	@Override
+	public List<ApplicationInstallation> getInstallationsBetween(final Date inFrom, final Date inTo) {
+		return installationService.getInstallationsBetween(inFrom, inTo);
+	}
+	
 	/* (non-Javadoc)
 	 * @see de.boetzmeyer.systemcontext.ISystemContext#getRunningApps(de.boetzmeyer.systemmodel.Computer)
 	 */
@@ -832,6 +1047,30 @@ public class SystemContext implements ISystemContext {
 		sessionService.shutdown(inComputer);;
 	}
 
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#startSystem(de.boetzmeyer.systemmodel.SystemConfig)
+	 */
+	@Override
+	public List<SessionWave> startSystem(final SystemConfig inSystem) {
+		return sessionService.startSystem(inSystem);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#shutdownSystem(de.boetzmeyer.systemmodel.SystemConfig)
+	 */
+	@Override
+	public List<SessionWave> shutdownSystem(final SystemConfig inSystem) {
+		return sessionService.shutdownSystem(inSystem);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#shutdownInfrastructure(de.boetzmeyer.systemmodel.Infrastructure)
+	 */
+	@Override
+	public List<SessionWave> shutdownInfrastructure(final Infrastructure inInfrastructure) {
+		return sessionService.shutdownInfrastructure(inInfrastructure);
+	}
+
 	/* (non-Javadoc)
 	 * @see de.boetzmeyer.systemcontext.ISystemContext#shutdown(de.boetzmeyer.systemmodel.ApplicationSession)
 	 */
@@ -872,6 +1111,14 @@ public class SystemContext implements ISystemContext {
 		installationService.uninstallComputer(inComputer);
 	}
 
+	/* (non-Javadoc)
+	 * @see de.boetzmeyer.systemcontext.ISystemContext#uninstallComputers(java.util.List)
+	 */
+	@Override
+	public boolean uninstallComputers(final List<Computer> inComputers) {
+		return installationService.uninstallComputers(inComputers);
+	}
+
 	@Override
 	public List<SystemType> getSystemTypes() {
 		return infrastructureService.getSystemTypes();
@@ -897,6 +1144,31 @@ public class SystemContext implements ISystemContext {
 		return applicationService.getAppDependencies(inApp);
 	}
 
+	@Override
+	public SystemModel getAppDependents(ApplicationConfig inApp) {
+		return applicationService.getAppDependents(inApp);
+	}
+
+	@Override
+	public SystemModel getAppDependents(ApplicationConfig inApp, int inMaxDepth) {
+		return applicationService.getAppDependents(inApp, inMaxDepth);
+	}
+
+	@Override
+	public ComponentAnalysis analyseAppDependencies() {
+		return applicationService.analyseAppDependencies();
+	}
+
+	@Override
+	public int getHopCount(ApplicationConfig inSource, ApplicationConfig inDestination) {
+		return applicationService.getHopCount(inSource, inDestination);
+	}
+
+	@Override
+	public List<ApplicationConfig> getShortestPath(ApplicationConfig inSource, ApplicationConfig inDestination) {
+		return applicationService.getShortestPath(inSource, inDestination);
+	}
+
 	@Override
 	public void configureApp(ApplicationConfig inApp, Map<String, String> inItems) {
 		applicationService.configureApp(inApp, inItems);
@@ -906,4 +1178,19 @@ public class SystemContext implements ISystemContext {
 	public String getConfigurationValue(ApplicationConfig inApp, String inKey) {
 		return applicationService.getConfigurationValue(inApp, inKey);
 	}
+
+	@Override
+	public ConfigurationItem findConfigurationItem(ApplicationConfig inApp, String inKey) {
+		return applicationService.findConfigurationItem(inApp, inKey);
+	}
+
+	@Override
+	public void invalidateConfiguration(ApplicationConfig inApp) {
+		applicationService.invalidateConfiguration(inApp);
+	}
+
+	@Override
+	public UpdateResult<ConfigurationItem> compareAndSetConfigurationValue(ApplicationConfig inApp, String inKey, String inValue, long inExpectedVersion) {
+		return applicationService.compareAndSetConfigurationValue(inApp, inKey, inValue, inExpectedVersion);
+	}
 }
@@ -4,9 +4,11 @@ import de.boetzmeyer.systemmodel.IServer;
 
 abstract class SystemContextService {
 	protected final IServer systemAccess;
+	protected final ContextIndex index;
 	
-	public SystemContextService(final IServer inSystemAccess) {
+	public SystemContextService(final IServer inSystemAccess, final ContextIndex inIndex) {
 		systemAccess = inSystemAccess;
+		index = inIndex;
 	}
 
 }
@@ -0,0 +1,171 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.boetzmeyer.systemcontext.TopologySnapshot.Adjacency;
+import de.boetzmeyer.systemcontext.TopologySnapshot.Ids;
+import de.boetzmeyer.systemmodel.ApplicationConfig;
+import de.boetzmeyer.systemmodel.ApplicationInstallation;
+import de.boetzmeyer.systemmodel.ApplicationLink;
+import de.boetzmeyer.systemmodel.Computer;
+import de.boetzmeyer.systemmodel.IServer;
+import de.boetzmeyer.systemmodel.SystemConfig;
+import de.boetzmeyer.systemmodel.SystemLink;
+
+/**
+ * Holds the current topology snapshot. The services report what they
+ * changed, and the next snapshot rebuilds only the id ranges and relations
+ * that depend on it while sharing the rest with the previous snapshot.
+ */
+final class TopologyIndex {
+	public static final int APPS = 1;
+	public static final int SYSTEMS = 2;
+	public static final int COMPUTERS = 4;
+	public static final int APP_LINKS = 8;
+	public static final int SYSTEM_LINKS = 16;
+	public static final int INSTALLATIONS = 32;
+	private static final int ALL = APPS | SYSTEMS | COMPUTERS | APP_LINKS | SYSTEM_LINKS | INSTALLATIONS;
+
+	private final IServer systemAccess;
+	private final LinkIndex<ApplicationLink> appLinks;
+	private final LinkIndex<SystemLink> systemLinks;
+	private TopologySnapshot snapshot;
+	private long[] systemsOfApps;
+	private int changes = ALL;
+
+	public TopologyIndex(final IServer inSystemAccess, final LinkIndex<ApplicationLink> inAppLinks, final LinkIndex<SystemLink> inSystemLinks) {
+		systemAccess = inSystemAccess;
+		appLinks = inAppLinks;
+		systemLinks = inSystemLinks;
+	}
+
+	public synchronized TopologySnapshot getSnapshot() {
+		if (changes != 0) {
+			snapshot = rebuild(changes);
+			changes = 0;
+		}
+		return snapshot;
+	}
+
+	public synchronized void invalidate(final int inChanges) {
+		changes |= inChanges;
+	}
+
+	private TopologySnapshot rebuild(final int inChanges) {
+		final boolean appsChanged = (inChanges & APPS) != 0;
+		final boolean systemsChanged = (inChanges & SYSTEMS) != 0;
+		final boolean computersChanged = (inChanges & COMPUTERS) != 0;
+		final Ids apps = appsChanged ? loadApps() : snapshot.getApps();
+		final Ids systems = systemsChanged ? loadSystems() : snapshot.getSystems();
+		final Ids computers = computersChanged ? loadComputers() : snapshot.getComputers();
+		final Adjacency appAdjacency;
+		if (appsChanged || ((inChanges & APP_LINKS) != 0)) {
+			appAdjacency = buildAppLinks(apps);
+		} else {
+			appAdjacency = snapshot.getAppLinks();
+		}
+		final Adjacency systemAdjacency;
+		if (systemsChanged || ((inChanges & SYSTEM_LINKS) != 0)) {
+			systemAdjacency = buildSystemLinks(systems);
+		} else {
+			systemAdjacency = snapshot.getSystemLinks();
+		}
+		final Adjacency appSystems;
+		if (appsChanged || systemsChanged) {
+			appSystems = buildAppSystems(apps, systems);
+		} else {
+			appSystems = snapshot.getAppSystems();
+		}
+		final Adjacency appInstallations;
+		if (appsChanged || computersChanged || ((inChanges & INSTALLATIONS) != 0)) {
+			appInstallations = buildAppInstallations(apps, computers);
+		} else {
+			appInstallations = snapshot.getAppInstallations();
+		}
+		return new TopologySnapshot(apps, systems, computers, appAdjacency, systemAdjacency, appSystems, appInstallations);
+	}
+
+	private Ids loadApps() {
+		final List<Long> keys = new ArrayList<Long>();
+		final List<Long> systems = new ArrayList<Long>();
+		for (ApplicationConfig app : systemAccess.listApplicationConfig()) {
+			if (app != null) {
+				keys.add(app.getPrimaryKey());
+				systems.add(app.getSystemConfig());
+			}
+		}
+		systemsOfApps = new long[systems.size()];
+		for (int app = 0; app < systemsOfApps.length; app++) {
+			systemsOfApps[app] = systems.get(app);
+		}
+		return new Ids(keys);
+	}
+
+	private Ids loadSystems() {
+		final List<Long> keys = new ArrayList<Long>();
+		for (SystemConfig system : systemAccess.listSystemConfig()) {
+			if (system != null) {
+				keys.add(system.getPrimaryKey());
+			}
+		}
+		return new Ids(keys);
+	}
+
+	private Ids loadComputers() {
+		final List<Long> keys = new ArrayList<Long>();
+		for (Computer computer : systemAccess.listComputer()) {
+			if (computer != null) {
+				keys.add(computer.getPrimaryKey());
+			}
+		}
+		return new Ids(keys);
+	}
+
+	private Adjacency buildAppLinks(final Ids inApps) {
+		final List<ApplicationLink> links = appLinks.getLinks();
+		final int[] sources = new int[links.size()];
+		final int[] targets = new int[links.size()];
+		for (int link = 0; link < sources.length; link++) {
+			sources[link] = inApps.getId(links.get(link).getSource());
+			targets[link] = inApps.getId(links.get(link).getDestination());
+		}
+		return Adjacency.build(inApps.size(), sources, targets, sources.length);
+	}
+
+	private Adjacency buildSystemLinks(final Ids inSystems) {
+		final List<SystemLink> links = systemLinks.getLinks();
+		final int[] sources = new int[links.size()];
+		final int[] targets = new int[links.size()];
+		for (int link = 0; link < sources.length; link++) {
+			sources[link] = inSystems.getId(links.get(link).getSource());
+			targets[link] = inSystems.getId(links.get(link).getDestination());
+		}
+		return Adjacency.build(inSystems.size(), sources, targets, sources.length);
+	}
+
+	private Adjacency buildAppSystems(final Ids inApps, final Ids inSystems) {
+		final int[] sources = new int[inApps.size()];
+		final int[] targets = new int[inApps.size()];
+		for (int app = 0; app < sources.length; app++) {
+			sources[app] = app;
+			targets[app] = inSystems.getId(systemsOfApps[app]);
+		}
+		return Adjacency.build(inApps.size(), sources, targets, sources.length);
+	}
+
+	private Adjacency buildAppInstallations(final Ids inApps, final Ids inComputers) {
+		final List<ApplicationInstallation> installations = systemAccess.listApplicationInstallation();
+		final int[] sources = new int[installations.size()];
+		final int[] targets = new int[installations.size()];
+		int pairs = 0;
+		for (ApplicationInstallation installation : installations) {
+			if (installation != null) {
+				sources[pairs] = inApps.getId(installation.getApplicationConfig());
+				targets[pairs] = inComputers.getId(installation.getComputer());
+				pairs++;
+			}
+		}
+		return Adjacency.build(inApps.size(), sources, targets, pairs);
+	}
+}
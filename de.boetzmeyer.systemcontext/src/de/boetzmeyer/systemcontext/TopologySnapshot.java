@@ -0,0 +1,196 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the applications, systems and computers and the
+ * relations between them. Every entity type has its own dense int ids from 0
+ * to count - 1, and every relation is stored as offset and target arrays
+ * over these ids, so analytics can walk the topology without allocating.
+ */
+public final class TopologySnapshot {
+	private final Ids apps;
+	private final Ids systems;
+	private final Ids computers;
+	private final Adjacency appLinks;
+	private final Adjacency systemLinks;
+	private final Adjacency appSystems;
+	private final Adjacency appInstallations;
+
+	TopologySnapshot(final Ids inApps, final Ids inSystems, final Ids inComputers, final Adjacency inAppLinks, final Adjacency inSystemLinks,
+			final Adjacency inAppSystems, final Adjacency inAppInstallations) {
+		apps = inApps;
+		systems = inSystems;
+		computers = inComputers;
+		appLinks = inAppLinks;
+		systemLinks = inSystemLinks;
+		appSystems = inAppSystems;
+		appInstallations = inAppInstallations;
+	}
+
+	public int getAppCount() {
+		return apps.keys.length;
+	}
+
+	/**
+	 * The dense id of the application, or -1 if it is not in the snapshot.
+	 */
+	public int getAppId(final long inApp) {
+		return apps.getId(inApp);
+	}
+
+	public long getAppKey(final int inAppId) {
+		return apps.keys[inAppId];
+	}
+
+	public int getSystemCount() {
+		return systems.keys.length;
+	}
+
+	public int getSystemId(final long inSystem) {
+		return systems.getId(inSystem);
+	}
+
+	public long getSystemKey(final int inSystemId) {
+		return systems.keys[inSystemId];
+	}
+
+	public int getComputerCount() {
+		return computers.keys.length;
+	}
+
+	public int getComputerId(final long inComputer) {
+		return computers.getId(inComputer);
+	}
+
+	public long getComputerKey(final int inComputerId) {
+		return computers.keys[inComputerId];
+	}
+
+	/**
+	 * Application ids to the ids of the applications they depend on.
+	 */
+	public Adjacency getAppLinks() {
+		return appLinks;
+	}
+
+	/**
+	 * System ids to the ids of the systems they depend on.
+	 */
+	public Adjacency getSystemLinks() {
+		return systemLinks;
+	}
+
+	/**
+	 * Application ids to the id of the system they belong to.
+	 */
+	public Adjacency getAppSystems() {
+		return appSystems;
+	}
+
+	/**
+	 * Application ids to the ids of the computers they are installed on.
+	 */
+	public Adjacency getAppInstallations() {
+		return appInstallations;
+	}
+
+	Ids getApps() {
+		return apps;
+	}
+
+	Ids getSystems() {
+		return systems;
+	}
+
+	Ids getComputers() {
+		return computers;
+	}
+
+	/**
+	 * Compressed sparse rows of one relation.
+	 */
+	public static final class Adjacency {
+		private final int[] offsets;
+		private final int[] targets;
+
+		private Adjacency(final int[] inOffsets, final int[] inTargets) {
+			offsets = inOffsets;
+			targets = inTargets;
+		}
+
+		/**
+		 * Builds the rows of inNodeCount nodes from parallel source and
+		 * target id arrays. Pairs with an id of -1 are skipped.
+		 */
+		static Adjacency build(final int inNodeCount, final int[] inSources, final int[] inTargets, final int inPairCount) {
+			final int[] offsets = new int[inNodeCount + 1];
+			int linkCount = 0;
+			for (int pair = 0; pair < inPairCount; pair++) {
+				if ((inSources[pair] >= 0) && (inTargets[pair] >= 0)) {
+					offsets[inSources[pair] + 1]++;
+					linkCount++;
+				}
+			}
+			for (int node = 0; node < inNodeCount; node++) {
+				offsets[node + 1] += offsets[node];
+			}
+			final int[] position = new int[inNodeCount];
+			System.arraycopy(offsets, 0, position, 0, inNodeCount);
+			final int[] targets = new int[linkCount];
+			for (int pair = 0; pair < inPairCount; pair++) {
+				if ((inSources[pair] >= 0) && (inTargets[pair] >= 0)) {
+					targets[position[inSources[pair]]++] = inTargets[pair];
+				}
+			}
+			return new Adjacency(offsets, targets);
+		}
+
+		public int getNodeCount() {
+			return offsets.length - 1;
+		}
+
+		public int getLinkCount() {
+			return targets.length;
+		}
+
+		public int getDegree(final int inNode) {
+			return offsets[inNode + 1] - offsets[inNode];
+		}
+
+		/**
+		 * The inIndex-th target of the node, 0 <= inIndex < getDegree(inNode).
+		 */
+		public int getTarget(final int inNode, final int inIndex) {
+			return targets[offsets[inNode] + inIndex];
+		}
+	}
+
+	/**
+	 * Dense ids of one entity type.
+	 */
+	static final class Ids {
+		private final long[] keys;
+		private final Map<Long, Integer> idsByKey;
+
+		Ids(final List<Long> inKeys) {
+			keys = new long[inKeys.size()];
+			idsByKey = new HashMap<Long, Integer>(inKeys.size() * 2);
+			for (int id = 0; id < keys.length; id++) {
+				keys[id] = inKeys.get(id);
+				idsByKey.put(keys[id], id);
+			}
+		}
+
+		int size() {
+			return keys.length;
+		}
+
+		int getId(final long inKey) {
+			final Integer id = idsByKey.get(inKey);
+			return (id != null) ? id.intValue() : -1;
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package de.boetzmeyer.systemcontext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import de.boetzmeyer.systemmodel.ApplicationConfig;
+import de.boetzmeyer.systemmodel.ApplicationInstallation;
+import de.boetzmeyer.systemmodel.ApplicationLink;
+import de.boetzmeyer.systemmodel.Computer;
+import de.boetzmeyer.systemmodel.ConfigurationItem;
+import de.boetzmeyer.systemmodel.IServer;
+import de.boetzmeyer.systemmodel.Network;
+import de.boetzmeyer.systemmodel.SystemConfig;
+import de.boetzmeyer.systemmodel.SystemModel;
+
+/**
+ * Collects changes in one SystemModel and writes them with a single save.
+ * The write methods validate like their counterparts on the context services
+ * but do not touch the server, and the read methods see the pending records
+ * before the saved ones. The context indexes are updated once the save
+ * succeeded. A failed save keeps the pending changes, so the caller can retry
+ * or discard them.
+ */
+public final class UnitOfWork {
+	private final IServer systemAccess;
+	private final ContextIndex index;
+	private SystemModel model = SystemModel.createEmpty();
+	private final Map<Long, SystemConfig> systems = new LinkedHashMap<Long, SystemConfig>();
+	private final Map<Long, Network> networks = new LinkedHashMap<Long, Network>();
+	private final Map<Long, Computer> computers = new LinkedHashMap<Long, Computer>();
+	private final Map<Long, ApplicationConfig> apps = new LinkedHashMap<Long, ApplicationConfig>();
+	private final Map<Long, ApplicationInstallation> appInstallations = new LinkedHashMap<Long, ApplicationInstallation>();
+	private final Map<Long, ApplicationLink> appLinks = new LinkedHashMap<Long, ApplicationLink>();
+	private final Map<Long, Map<String, ConfigurationItem>> configurationItems = new LinkedHashMap<Long, Map<String, ConfigurationItem>>();
+
+	UnitOfWork(final IServer inSystemAccess, final ContextIndex inIndex) {
+		systemAccess = inSystemAccess;
+		index = inIndex;
+	}
+
+	public synchronized SystemConfig addSystem(final SystemConfig inSystem) {
+		if ((inSystem != null) && inSystem.isValid() && model.addSystemConfig(inSystem)) {
+			systems.put(inSystem.getPrimaryKey(), inSystem);
+			return inSystem;
+		}
+		return null;
+	}
+
+	public synchronized Network addNetwork(final Network inNetwork) {
+		if ((inNetwork != null) && inNetwork.isValid() && model.addNetwork(inNetwork)) {
+			networks.put(inNetwork.getPrimaryKey(), inNetwork);
+			return inNetwork;
+		}
+		return null;
+	}
+
+	public synchronized Computer addComputer(final Computer inComputer) {
+		if ((inComputer != null) && inComputer.isValid() && model.addComputer(inComputer)) {
+			computers.put(inComputer.getPrimaryKey(), inComputer);
+			return inComputer;
+		}
+		return null;
+	}
+
+	public synchronized Computer installComputer(final String inComputerName, final String inIPAddress, final String inRemarks, final Network inNetwork) {
+		final Computer computer = Computer.generate();
+		computer.setComputerName(inComputerName);
+		computer.setIPAddress(inIPAddress);
+		computer.setRemarks(inRemarks);
+		if (inNetwork != null) {
+			computer.setNetwork(inNetwork.getPrimaryKey());
+		}
+		return addComputer(computer);
+	}
+
+	public synchronized ApplicationConfig addApp(final ApplicationConfig inApp) {
+		if ((inApp != null) && inApp.isValid() && model.addApplicationConfig(inApp)) {
+			apps.put(inApp.getPrimaryKey(), inApp);
+			return inApp;
+		}
+		return null;
+	}
+
+	public synchronized ApplicationInstallation installApp(final Computer inComputer, final ApplicationConfig inApp) {
+		if ((inComputer != null) && (inApp != null)) {
+			final ApplicationConfig app = findApp(inApp.getPrimaryKey());
+			final Computer computer = findComputer(inComputer.getPrimaryKey());
+			if ((app != null) && (computer != null)) {
+				final ApplicationInstallation appInstallation = ApplicationInstallation.generate();
+				appInstallation.setApplicationConfig(app.getPrimaryKey());
+				appInstallation.setComputer(computer.getPrimaryKey());
+				if (model.addApplicationInstallation(appInstallation)) {
+					appInstallations.put(appInstallation.getPrimaryKey(), appInstallation);
+					return appInstallation;
+				}
+			}
+		}
+		return null;
+	}
+
+	public synchronized ApplicationLink connectApps(final ApplicationConfig inSourceApp, final ApplicationConfig inTargetApp) {
+		if ((inSourceApp != null) && (inTargetApp != null)) {
+			final ApplicationConfig sourceApp = findApp(inSourceApp.getPrimaryKey());
+			final ApplicationConfig targetApp = findApp(inTargetApp.getPrimaryKey());
+			if ((sourceApp != null) && (targetApp != null)) {
+				ApplicationLink appLink = findAppLink(sourceApp.getPrimaryKey(), targetApp.getPrimaryKey());
+				if (appLink == null) {
+					appLink = ApplicationLink.generate();
+					appLink.setSource(sourceApp.getPrimaryKey());
+					appLink.setDestination(targetApp.getPrimaryKey());
+					if (!model.addApplicationLink(appLink)) {
+						return null;
+					}
+					appLinks.put(appLink.getPrimaryKey(), appLink);
+				}
+				return appLink;
+			}
+		}
+		return null;
+	}
+
+	public synchronized void configureApp(final ApplicationConfig inApp, final Map<String, String> inItems) {
+		if ((inApp != null) && (inItems != null)) {
+			final ApplicationConfig app = findApp(inApp.getPrimaryKey());
+			if (app != null) {
+				Map<String, ConfigurationItem> items = configurationItems.get(app.getPrimaryKey());
+				if (items == null) {
+					items = new LinkedHashMap<String, ConfigurationItem>();
+					configurationItems.put(app.getPrimaryKey(), items);
+				}
+				for (Entry<String, String> entry : inItems.entrySet()) {
+					if (entry != null) {
+						final ConfigurationItem pendingItem = items.get(entry.getKey());
+						if (pendingItem != null) {
+							pendingItem.setItemValue(entry.getValue());
+						} else {
+							final ConfigurationItem item = configure(app.getPrimaryKey(), entry.getKey());
+							item.setItemValue(entry.getValue());
+							if (model.addConfigurationItem(item)) {
+								items.put(entry.getKey(), item);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	public synchronized SystemConfig getSystemByName(final String inSystemName) {
+		for (SystemConfig system : systems.values()) {
+			if (sameName(system.getSystemName(), inSystemName)) {
+				return system;
+			}
+		}
+		return index.getSystemsByName().find(inSystemName);
+	}
+
+	public synchronized Computer getComputerByName(final String inComputerName) {
+		for (Computer computer : computers.values()) {
+			if (sameName(computer.getComputerName(), inComputerName)) {
+				return computer;
+			}
+		}
+		return index.getComputersByName().find(inComputerName);
+	}
+
+	public synchronized ApplicationConfig getAppByName(final String inApplicationName) {
+		for (ApplicationConfig app : apps.values()) {
+			if (sameName(app.getApplicationName(), inApplicationName)) {
+				return app;
+			}
+		}
+		return index.getAppsByName().find(inApplicationName);
+	}
+
+	public synchronized List<ApplicationInstallation> getAppInstallations(final ApplicationConfig inApp) {
+		final List<ApplicationInstallation> installations = new ArrayList<ApplicationInstallation>();
+		if (inApp != null) {
+			if (!apps.containsKey(inApp.getPrimaryKey())) {
+				installations.addAll(systemAccess.referencesApplicationInstallationByApplicationConfig(inApp.getPrimaryKey()));
+			}
+			for (ApplicationInstallation appInstallation : appInstallations.values()) {
+				if (appInstallation.getApplicationConfig() == inApp.getPrimaryKey()) {
+					installations.add(appInstallation);
+				}
+			}
+		}
+		return installations;
+	}
+
+	public synchronized String getConfigurationValue(final ApplicationConfig inApp, final String inKey) {
+		if ((inApp != null) && (inKey != null)) {
+			final Map<String, ConfigurationItem> items = configurationItems.get(inApp.getPrimaryKey());
+			if ((items != null) && items.containsKey(inKey)) {
+				return items.get(inKey).getItemValue();
+			}
+			if (!apps.containsKey(inApp.getPrimaryKey())) {
+				return index.getAppConfigurations().getValue(inApp.getPrimaryKey(), inKey);
+			}
+		}
+		return null;
+	}
+
+	public synchronized boolean hasChanges() {
+		return !systems.isEmpty() || !networks.isEmpty() || !computers.isEmpty() || !apps.isEmpty() || !appInstallations.isEmpty()
+				|| !appLinks.isEmpty() || !configurationItems.isEmpty();
+	}
+
+	/**
+	 * Writes all pending changes with a single save.
+	 */
+	public synchronized boolean save() {
+		if (!hasChanges()) {
+			return true;
+		}
+		if (index.save(model)) {
+			publish();
+			discard();
+			return true;
+		}
+		return false;
+	}
+
+	public synchronized void discard() {
+		model = SystemModel.createEmpty();
+		systems.clear();
+		networks.clear();
+		computers.clear();
+		apps.clear();
+		appInstallations.clear();
+		appLinks.clear();
+		configurationItems.clear();
+	}
+
+	private void publish() {
+		int changes = 0;
+		for (SystemConfig system : systems.values()) {
+			index.getSystemsByName().add(system);
+			changes |= TopologyIndex.SYSTEMS;
+		}
+		for (Network network : networks.values()) {
+			index.getNetworksByName().add(network);
+		}
+		for (Computer computer : computers.values()) {
+			index.addComputer(computer);
+		}
+		for (ApplicationConfig app : apps.values()) {
+			index.getAppsByName().add(app);
+			index.getAppDependencies().addApp(app);
+			changes |= TopologyIndex.APPS;
+		}
+		for (ApplicationInstallation appInstallation : appInstallations.values()) {
+			index.getAppInstallations().add(appInstallation);
+			changes |= TopologyIndex.INSTALLATIONS;
+		}
+		for (ApplicationLink appLink : appLinks.values()) {
+			index.getAppLinks().add(appLink);
+			index.getAppDependencies().invalidate(appLink.getSource());
+			changes |= TopologyIndex.APP_LINKS;
+		}
+		for (Long app : configurationItems.keySet()) {
+			index.getAppConfigurations().invalidate(app);
+		}
+		index.getTopology().invalidate(changes);
+	}
+
+	/**
+	 * A copy of the saved item of the key, or a new item if the application
+	 * has none, as configureApp of the service does.
+	 */
+	private ConfigurationItem configure(final long inApp, final String inKey) {
+		final ConfigurationItem savedItem = (!apps.containsKey(inApp) && (inKey != null)) ? index.getAppConfigurations().getItem(inApp, inKey) : null;
+		if (savedItem != null) {
+			return savedItem.copy();
+		}
+		final ConfigurationItem item = ConfigurationItem.generate();
+		item.setApplicationConfig(inApp);
+		item.setItemKey(inKey);
+		return item;
+	}
+
+	private ApplicationConfig findApp(final long inApp) {
+		final ApplicationConfig app = apps.get(inApp);
+		return (app != null) ? app : index.getAppCache().get(inApp);
+	}
+
+	private Computer findComputer(final long inComputer) {
+		final Computer computer = computers.get(inComputer);
+		return (computer != null) ? computer : index.getComputerCache().get(inComputer);
+	}
+
+	private ApplicationLink findAppLink(final long inSource, final long inDestination) {
+		for (ApplicationLink appLink : appLinks.values()) {
+			if ((appLink.getSource() == inSource) && (appLink.getDestination() == inDestination)) {
+				return appLink;
+			}
+		}
+		return index.getAppLinks().find(inSource, inDestination);
+	}
+
+	private static boolean sameName(final String inName, final String inOtherName) {
+		return (inName != null) && (inOtherName != null) && NameIndex.normalize(inName).equals(NameIndex.normalize(inOtherName));
+	}
+}
@@ -0,0 +1,69 @@
+package de.boetzmeyer.systemcontext;
+
+/**
+ * Outcome of a compare-and-set update. On a conflict the result carries the
+ * record as it is on the server, whose replication version is the one to
+ * expect on the next attempt.
+ */
+public final class UpdateResult<T> {
+	public enum Status {
+		UPDATED, CONFLICT, NOT_FOUND, FAILED
+	}
+
+	private final Status status;
+	private final T record;
+
+	private UpdateResult(final Status inStatus, final T inRecord) {
+		status = inStatus;
+		record = inRecord;
+	}
+
+	static <T> UpdateResult<T> updated(final T inRecord) {
+		return new UpdateResult<T>(Status.UPDATED, inRecord);
+	}
+
+	static <T> UpdateResult<T> conflict(final T inCurrentRecord) {
+		return new UpdateResult<T>(Status.CONFLICT, inCurrentRecord);
+	}
+
+	static <T> UpdateResult<T> notFound() {
+		return new UpdateResult<T>(Status.NOT_FOUND, null);
+	}
+
+	static <T> UpdateResult<T> failed(final T inRecord) {
+		return new UpdateResult<T>(Status.FAILED, inRecord);
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public T getRecord() {
+		return record;
+	}
+
+	public boolean isUpdated() {
+		return status == Status.UPDATED;
+	}
+
+	public boolean isConflict() {
+		return status == Status.CONFLICT;
+	}
+
+	/**
+	 * Runs the attempt until it does not end in a conflict, at most
+	 * inMaxAttempts times. Every attempt after the first receives the record
+	 * that won the previous one.
+	 */
+	public static <T> UpdateResult<T> retry(final int inMaxAttempts, final Attempt<T> inAttempt) {
+		UpdateResult<T> result = inAttempt.run(null);
+		for (int attempt = 1; (attempt < inMaxAttempts) && result.isConflict(); attempt++) {
+			result = inAttempt.run(result.getRecord());
+		}
+		return result;
+	}
+
+	public interface Attempt<T> {
+		UpdateResult<T> run(T inCurrentRecord);
+	}
+}
@@ -0,0 +1,75 @@
+package de.boetzmeyer.systemcontext;
+
+import de.boetzmeyer.systemmodel.IRecordable;
+
+/**
+ * Compare-and-set updates on the server replication version of a record.
+ * Neither server checks the version on save, so the check and the save run
+ * under a lock. The locks are striped by a key, the primary key of the
+ * application of a configuration or of the session of a state, so the plain
+ * writers and the compare-and-set writers of the same records take turns
+ * while writers of different records rarely wait for each other.
+ * <p>
+ * The check is local to this JVM: it orders the writers of one context, but
+ * a process that saves the record between the load and the save of an
+ * update is overwritten without a conflict.
+ */
+final class VersionLocks {
+	private static final int STRIPES = 64;
+
+	private final Object[] stripes = new Object[STRIPES];
+	private final ContextIndex index;
+
+	public VersionLocks(final ContextIndex inIndex) {
+		index = inIndex;
+		for (int stripe = 0; stripe < STRIPES; stripe++) {
+			stripes[stripe] = new Object();
+		}
+	}
+
+	/**
+	 * Loads the record, applies the change if its version is still
+	 * inExpectedVersion and saves it, all under the lock of inLockKey. The
+	 * record is loaded under the lock, so it reflects every save made through
+	 * this context.
+	 */
+	public <T extends IRecordable> UpdateResult<T> compareAndSet(final long inLockKey, final long inPrimaryKey, final long inExpectedVersion,
+			final Change<T> inChange) {
+		synchronized (getLock(inLockKey)) {
+			final T record = inChange.load(inPrimaryKey);
+			if (record == null) {
+				return UpdateResult.notFound();
+			}
+			if (record.getServerReplicationVersion() != inExpectedVersion) {
+				return UpdateResult.conflict(record);
+			}
+			inChange.apply(record);
+			if (index.save(record)) {
+				inChange.saved(record);
+				return UpdateResult.updated(record);
+			}
+			return UpdateResult.failed(record);
+		}
+	}
+
+	/**
+	 * The lock of the stripe of inLockKey. Plain writers hold it while they
+	 * read and save the records of the key.
+	 */
+	public Object getLock(final long inLockKey) {
+		return stripes[(int) ((inLockKey ^ (inLockKey >>> 32)) & (STRIPES - 1))];
+	}
+
+	abstract static class Change<T extends IRecordable> {
+		protected abstract T load(long inPrimaryKey);
+
+		protected abstract void apply(T inRecord);
+
+		/**
+		 * Called under the lock after a successful save, to update the
+		 * indexes.
+		 */
+		protected void saved(final T inRecord) {
+		}
+	}
+}
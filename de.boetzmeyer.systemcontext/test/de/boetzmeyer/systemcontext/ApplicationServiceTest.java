@@ -1,15 +1,26 @@
 package de.boetzmeyer.systemcontext;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
 import de.boetzmeyer.systemmodel.ApplicationConfig;
 import de.boetzmeyer.systemmodel.ApplicationType;
+import de.boetzmeyer.systemmodel.ConfigurationItem;
+import de.boetzmeyer.systemmodel.ConfigurationItemLink;
 import de.boetzmeyer.systemmodel.SystemConfig;
+import de.boetzmeyer.systemmodel.SystemLink;
 import de.boetzmeyer.systemmodel.SystemModel;
 import de.boetzmeyer.systemmodel.SystemType;
 
@@ -100,6 +111,10 @@ public class ApplicationServiceTest {
 			appService.connectApps(orderApp, productApp);
 			appService.connectApps(deliveryApp, orderApp);
 			
+			// links are directed and connecting twice returns the existing link
+			assertEquals(appService.findAppLink(deliveryApp, customerApp).getPrimaryKey(), appService.connectApps(deliveryApp, customerApp).getPrimaryKey());
+			assertNull(appService.findAppLink(customerApp, deliveryApp));
+			
 			// get system fragments of application
 			final SystemModel deliveryGraph = appService.getAppDependencies(deliveryApp);
 			assertEquals(4, deliveryGraph.listApplicationConfig().size());
@@ -116,11 +131,129 @@ public class ApplicationServiceTest {
 			final SystemModel productGraph = appService.getAppDependencies(productApp);
 			assertEquals(1, productGraph.listApplicationConfig().size());
 			assertEquals(0, productGraph.listApplicationLink().size());
-						
+
+			// product management is needed by order management and, through it, by delivery management
+			assertEquals(3, appService.getAppDependents(productApp).listApplicationConfig().size());
+			assertEquals(2, appService.getAppDependents(productApp, 1).listApplicationConfig().size());
+			assertEquals(1, appService.getAppDependents(deliveryApp).listApplicationConfig().size());
+
+			// a dependency cycle is walked once and cached closures follow new links
+			appService.connectApps(productApp, deliveryApp);
+			final SystemModel cyclicGraph = appService.getAppDependencies(productApp);
+			assertEquals(4, cyclicGraph.listApplicationConfig().size());
+			assertEquals(4, cyclicGraph.listApplicationLink().size());
+			final ComponentAnalysis cyclicAnalysis = appService.analyseAppDependencies();
+			assertEquals(1, cyclicAnalysis.getCycles().size());
+			assertEquals(3, cyclicAnalysis.getLargestComponentSize());
+			assertEquals(3, appService.getHopCount(orderApp, customerApp));
+			assertEquals(4, appService.getShortestPath(orderApp, customerApp).size());
+			assertTrue(appService.disconnectApps(productApp, deliveryApp));
+			assertEquals(3, appService.getAppDependencies(deliveryApp).listApplicationLink().size());
+			assertEquals(1, appService.getAppDependencies(productApp).listApplicationConfig().size());
+
+			// configuration items form a tree, flattened into dotted keys
+			final ConfigurationItem database = createItem(orderApp, "database", "orders");
+			final ConfigurationItem host = createItem(orderApp, "host", "db-1");
+			final ConfigurationItem port = createItem(orderApp, "port", "5432");
+			final SystemModel configModel = SystemModel.createEmpty();
+			configModel.addConfigurationItem(database);
+			configModel.addConfigurationItem(host);
+			configModel.addConfigurationItem(port);
+			configModel.addConfigurationItemLink(createItemLink(database, host));
+			configModel.addConfigurationItemLink(createItemLink(host, port));
+			assertTrue(configModel.save());
+			appService.invalidateConfiguration(orderApp);
+			final Map<String, String> databaseConfig = appService.getConfigurations(database);
+			assertEquals(3, databaseConfig.size());
+			assertEquals("5432", databaseConfig.get("database.host.port"));
+			final Map<String, String> hostConfig = appService.getConfigurations(host);
+			assertEquals(2, hostConfig.size());
+			assertEquals("db-1", hostConfig.get("database.host"));
+			assertEquals(database.getPrimaryKey(), appService.findRootItem(orderApp).getPrimaryKey());
+			assertEquals(3, appService.getAppConfiguration(orderApp).size());
+
+			// the tree is cached until links saved outside the context are announced, a cycle has no root
+			final SystemModel cycleModel = SystemModel.createEmpty();
+			cycleModel.addConfigurationItemLink(createItemLink(port, database));
+			assertTrue(cycleModel.save());
+			assertEquals(database.getPrimaryKey(), appService.findRootItem(orderApp).getPrimaryKey());
+			appService.invalidateConfiguration(orderApp);
+			final ConfigurationRoot cyclicRoot = appService.resolveRootItem(orderApp);
+			assertTrue(cyclicRoot.isCycle());
+			assertEquals(3, cyclicRoot.getCycle().size());
+			assertNull(appService.findRootItem(orderApp));
+			assertTrue(appService.getAppConfiguration(orderApp).isEmpty());
+			assertEquals(3, appService.getConfigurations(host).size());
+
+			// the shipping system uses two applications of the customer-relationship management system
+			final SystemConfig system2 = SystemConfig.generate();
+			system2.setSystemName("Shipping System");
+			system2.setSystemType(systemType.getPrimaryKey());
+			final ApplicationConfig shippingApp = ApplicationConfig.generate();
+			shippingApp.setApplicationName("Shipping");
+			shippingApp.setApplicationType(applicationType.getPrimaryKey());
+			shippingApp.setSystemConfig(system2.getPrimaryKey());
+			appService.addApp(shippingApp);
+			appService.connectApps(shippingApp, orderApp);
+			appService.connectApps(shippingApp, customerApp);
+			final List<SystemLink> strongestLinks = infrastructureService.getStrongestSystemLinks(Arrays.asList(system1, system2), 3);
+			assertEquals(1, strongestLinks.size());
+			assertEquals(system2.getPrimaryKey(), strongestLinks.get(0).getSource());
+			assertEquals(2.0, strongestLinks.get(0).getWeight(), 0.0);
+
+			// lookups are fanned out asynchronously, two at a time
+			final AsyncSystemContext asyncContext = new AsyncSystemContext(SystemContext.aquire(), 2);
+			final List<Future<ApplicationConfig>> lookups = new ArrayList<Future<ApplicationConfig>>();
+			for (final String appName : Arrays.asList("Customer Management", "Order Management", "Unknown")) {
+				lookups.add(asyncContext.submit(new AsyncSystemContext.Operation<ApplicationConfig>() {
+					@Override
+					public ApplicationConfig execute(final ISystemContext inContext) {
+						return inContext.findAppByName(appName);
+					}
+				}));
+			}
+			assertEquals(customerApp.getPrimaryKey(), lookups.get(0).get().getPrimaryKey());
+			assertEquals(orderApp.getPrimaryKey(), lookups.get(1).get().getPrimaryKey());
+			assertNull(lookups.get(2).get());
+			
+			// writes are submitted separately and run one at a time
+			final ApplicationConfig billingApp = ApplicationConfig.generate();
+			billingApp.setApplicationName("Billing");
+			billingApp.setApplicationType(applicationType.getPrimaryKey());
+			billingApp.setSystemConfig(system2.getPrimaryKey());
+			final Future<ApplicationConfig> write = asyncContext.submitWrite(new AsyncSystemContext.Operation<ApplicationConfig>() {
+				@Override
+				public ApplicationConfig execute(final ISystemContext inContext) {
+					return inContext.addApp(billingApp);
+				}
+			});
+			assertEquals(billingApp.getPrimaryKey(), write.get().getPrimaryKey());
+			assertEquals(billingApp.getPrimaryKey(), appService.findAppByName("billing").getPrimaryKey());
+			asyncContext.shutdown();
+
 			AllTests.deleteExistingSystemModelFiles();
 		} catch (IOException e) {
 			fail(e.getMessage());
+		} catch (InterruptedException e) {
+			fail(e.getMessage());
+		} catch (ExecutionException e) {
+			fail(e.getMessage());
 		}
 	}
 
+	private static ConfigurationItem createItem(final ApplicationConfig inApp, final String inKey, final String inValue) {
+		final ConfigurationItem item = ConfigurationItem.generate();
+		item.setApplicationConfig(inApp.getPrimaryKey());
+		item.setItemKey(inKey);
+		item.setItemValue(inValue);
+		return item;
+	}
+
+	private static ConfigurationItemLink createItemLink(final ConfigurationItem inParent, final ConfigurationItem inChild) {
+		final ConfigurationItemLink link = ConfigurationItemLink.generate();
+		link.setSource(inParent.getPrimaryKey());
+		link.setDestination(inChild.getPrimaryKey());
+		return link;
+	}
+
 }
@@ -1,12 +1,19 @@
 package de.boetzmeyer.systemcontext;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 
 import org.junit.Test;
 
+import de.boetzmeyer.systemmodel.ApplicationConfig;
+import de.boetzmeyer.systemmodel.ApplicationType;
 import de.boetzmeyer.systemmodel.Computer;
 import de.boetzmeyer.systemmodel.Infrastructure;
 import de.boetzmeyer.systemmodel.Network;
@@ -52,6 +59,9 @@ public class InfrastructureServiceTest {
 			// now network should be known on the server-side
 			assertEquals(1, infrastructureService.getNetworks().size());
 			
+			// the network is found by its name regardless of case
+			assertEquals(network.getPrimaryKey(), infrastructureService.findNetwork("NET").getPrimaryKey());
+			
 			// create computer locally
 			final Computer computer1a = Computer.generate();
 			computer1a.setComputerName("Computer 1a");
@@ -102,6 +112,14 @@ public class InfrastructureServiceTest {
 			
 			// the network still owns just two of them
 			assertEquals(2, infrastructureService.getComputers(network).size());
+			
+			// computers are resolved by their addresses
+			assertEquals(computer1b.getPrimaryKey(), infrastructureService.findComputerByAddress("127.0.0.2").getPrimaryKey());
+			assertEquals(3, infrastructureService.getComputersInRange("127.0.0.0/30").size());
+			assertEquals(1, infrastructureService.getComputersInRange("127.0.0.3/32").size());
+			assertEquals(0, infrastructureService.getComputersInRange("10.0.0.0/8").size());
+			assertEquals(network.getPrimaryKey(), infrastructureService.findNetworkByAddress("127.0.0.1").getPrimaryKey());
+			assertNull(infrastructureService.findNetworkByAddress("127.0.0.3"));
 		
 			// create a system type locally
 			final SystemType systemType = SystemType.generate();
@@ -144,6 +162,7 @@ public class InfrastructureServiceTest {
 			
 			// systems not known on the server-side
 			assertEquals(0, infrastructureService.getSystems(infrastructure).size());
+			assertNull(infrastructureService.getSystemByName("System 1"));
 			
 			// save the systems on the server-side
 			infrastructureService.addSystem(system1);
@@ -157,6 +176,10 @@ public class InfrastructureServiceTest {
 			
 			// the infrastructure owns just three of them
 			assertEquals(3, infrastructureService.getSystems(infrastructure).size());
+			
+			// the added systems are found by their names
+			assertEquals(system1.getPrimaryKey(), infrastructureService.getSystemByName("system 1").getPrimaryKey());
+			assertEquals(system5.getPrimaryKey(), infrastructureService.getSystemByName("SYSTEM 5").getPrimaryKey());
 						
 			// connect systems on the server-side
 			infrastructureService.connectSystems(system1, system2);
@@ -170,7 +193,107 @@ public class InfrastructureServiceTest {
 			assertEquals(1, model.listSystemType().size());       // "Car"
 			assertEquals(3, model.listSystemConfig().size());     // "System 1", "System 2", "System 3" 
 			assertEquals(3, model.listSystemLink().size());       // "1 -> 2", "1 -> 3", "2 -> 3"
-			
+
+			// systems depending on a system, transitively or up to a depth
+			final SystemModel dependents = infrastructureService.getSystemDependents(system3);
+			assertEquals(3, dependents.listSystemConfig().size());  // "System 1", "System 2", "System 3"
+			assertEquals(3, dependents.listSystemLink().size());    // "1 -> 2", "1 -> 3", "2 -> 3"
+			assertEquals(2, infrastructureService.getSystemDependents(system3, 1).listSystemLink().size());
+			assertEquals(1, infrastructureService.getSystemDependents(system3, 0).listSystemConfig().size());
+			assertEquals(2, infrastructureService.getSystemDependents(system5).listSystemConfig().size());
+
+			// the system links contain no cycle, "System 1" depends on "System 2" which depends on "System 3"
+			final ComponentAnalysis analysis = infrastructureService.analyseSystemDependencies();
+			assertEquals(5, analysis.getComponentCount());
+			assertEquals(0, analysis.getCycles().size());
+			assertEquals(0, analysis.getLevel(system3.getPrimaryKey()));
+			assertEquals(2, analysis.getLevel(system1.getPrimaryKey()));
+			assertEquals(1, analysis.getLevel(system4.getPrimaryKey()));
+			assertEquals(3, analysis.getLevels().size());
+
+			// "System 1" reaches "System 3" directly, "System 3" reaches nothing
+			assertEquals(1, infrastructureService.getHopCount(system1, system3));
+			assertEquals(2, infrastructureService.getShortestPath(system1, system3).size());
+			assertEquals(-1, infrastructureService.getHopCount(system3, system1));
+			assertEquals(0, infrastructureService.getShortestPath(system1, system5).size());
+
+			// the topology snapshot holds all systems and links over dense ids
+			final TopologySnapshot topology = infrastructureService.getTopology();
+			assertEquals(5, topology.getSystemCount());
+			assertEquals(3, topology.getComputerCount());
+			assertEquals(4, topology.getSystemLinks().getLinkCount());
+			final int system1Id = topology.getSystemId(system1.getPrimaryKey());
+			assertEquals(2, topology.getSystemLinks().getDegree(system1Id));
+			infrastructureService.disonnectSystems(system1, system2);
+			assertEquals(1, infrastructureService.getTopology().getSystemLinks().getDegree(system1Id));
+			assertEquals(2, topology.getSystemLinks().getDegree(system1Id));
+			infrastructureService.connectSystems(system1, system2);
+
+			// computers are added in bulk with one save, rejected ones are reported by position
+			final Computer computer3 = Computer.generate();
+			computer3.setComputerName("Computer 3");
+			computer3.setIPAddress("127.0.0.4");
+			computer3.setNetwork(network.getPrimaryKey());
+			final Computer computer4 = Computer.generate();
+			computer4.setComputerName("Computer 4");
+			computer4.setIPAddress("127.0.0.5");
+			computer4.setNetwork(network.getPrimaryKey());
+			final BulkResult<Computer> bulkResult = infrastructureService.addComputers(Arrays.asList(computer3, null, computer4, computer3));
+			assertEquals(2, bulkResult.getAdded().size());
+			assertEquals(2, bulkResult.getRejections().size());
+			assertEquals(1, bulkResult.getRejections().get(0).getPosition());
+			assertEquals(3, bulkResult.getRejections().get(1).getPosition());
+			assertEquals(5, infrastructureService.getComputers().size());
+			assertEquals(computer4.getPrimaryKey(), infrastructureService.findComputerByAddress("127.0.0.5").getPrimaryKey());
+			assertEquals(5, infrastructureService.getTopology().getComputerCount());
+
+			// a unit of work sees its own changes and writes them with one save
+			final UnitOfWork work = SystemContext.aquire().beginWork();
+			final Computer computer5 = work.installComputer("Computer 5", "127.0.0.6", "Staging server", network);
+			final ApplicationType appType = ApplicationType.generate();
+			appType.setTypeName("Service");
+			SystemContext.aquire().addApplicationType(appType);
+			final ApplicationConfig app = ApplicationConfig.generate();
+			app.setApplicationName("Fleet Management");
+			app.setApplicationType(appType.getPrimaryKey());
+			app.setSystemConfig(system1.getPrimaryKey());
+			assertEquals(app, work.addApp(app));
+			work.installApp(computer5, app);
+			work.configureApp(app, Collections.singletonMap("timeout", "30"));
+			assertEquals(computer5.getPrimaryKey(), work.getComputerByName("computer 5").getPrimaryKey());
+			assertEquals(1, work.getAppInstallations(app).size());
+			assertEquals("30", work.getConfigurationValue(app, "timeout"));
+			assertNull(infrastructureService.findComputerByAddress("127.0.0.6"));
+			assertTrue(work.save());
+			assertFalse(work.hasChanges());
+			assertEquals(computer5.getPrimaryKey(), infrastructureService.findComputerByAddress("127.0.0.6").getPrimaryKey());
+			assertEquals(6, infrastructureService.getTopology().getComputerCount());
+			assertEquals(1, SystemContext.aquire().getAppInstallations(app).size());
+			assertEquals("30", SystemContext.aquire().getConfigurationValue(app, "timeout"));
+			final UnitOfWork reconfiguration = SystemContext.aquire().beginWork();
+			reconfiguration.configureApp(app, Collections.singletonMap("timeout", "60"));
+			assertEquals("60", reconfiguration.getConfigurationValue(app, "timeout"));
+			assertEquals("30", SystemContext.aquire().getConfigurationValue(app, "timeout"));
+			assertTrue(reconfiguration.save());
+			assertEquals("60", SystemContext.aquire().getConfigurationValue(app, "timeout"));
+			SystemContext.aquire().configureApp(app, Collections.singletonMap("timeout", "90"));
+			assertEquals("90", SystemContext.aquire().getConfigurationValue(app, "timeout"));
+			assertEquals(1, SystemContext.aquire().getConfigurationItems(app).size());
+
+			// lookups by primary key are cached until the context changes the record
+			assertEquals(computer5, infrastructureService.findComputer(computer5));
+			assertEquals(computer5, infrastructureService.findComputer(computer5));
+			SystemContext.aquire().uninstallComputer(computer5);
+			assertNull(infrastructureService.findComputer(computer5));
+			assertTrue(SystemContext.aquire().setCacheCapacity(Computer.class, 0));
+			assertEquals(computer4, infrastructureService.findComputer(computer4));
+			assertTrue(SystemContext.aquire().setCacheCapacity(Computer.class, RecordCache.DEFAULT_CAPACITY));
+			final Computer renamedComputer = infrastructureService.findComputer(computer4).copy();
+			renamedComputer.setComputerName("Computer 4b");
+			infrastructureService.addComputer(renamedComputer);
+			assertEquals("Computer 4b", infrastructureService.findComputer(computer4).getComputerName());
+			assertFalse(SystemContext.aquire().setCacheCapacity(ApplicationType.class, 16));
+
 			AllTests.deleteExistingSystemModelFiles();
 		} catch (IOException e) {
 			fail(e.getMessage());
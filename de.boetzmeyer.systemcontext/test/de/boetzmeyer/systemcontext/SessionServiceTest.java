@@ -1,9 +1,13 @@
 package de.boetzmeyer.systemcontext;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,6 +21,7 @@ import de.boetzmeyer.systemmodel.ApplicationType;
 import de.boetzmeyer.systemmodel.Computer;
 import de.boetzmeyer.systemmodel.ConfigurationItem;
 import de.boetzmeyer.systemmodel.Network;
+import de.boetzmeyer.systemmodel.PropertyState;
 import de.boetzmeyer.systemmodel.SessionState;
 import de.boetzmeyer.systemmodel.SystemConfig;
 import de.boetzmeyer.systemmodel.SystemType;
@@ -92,10 +97,14 @@ public class SessionServiceTest {
 			items.put(ITEM_KEY_1, ITEM_VALUE_1);
 			items.put(ITEM_KEY_2, ITEM_VALUE_2);
 			
+			// the application is not configured yet
+			assertNull(appService.getConfigurationValue(customerApp, ITEM_KEY_1));
+			
 			// save application on the server-side
 			appService.configureApp(customerApp, items);
 			
 			// query application configuration
+			assertEquals(ITEM_VALUE_1, appService.getConfigurationValue(customerApp, ITEM_KEY_1));
 			assertEquals(ITEM_VALUE_2, appService.getConfigurationValue(customerApp, ITEM_KEY_2));
 			
 			// connect with installation service
@@ -124,6 +133,12 @@ public class SessionServiceTest {
 			// now app installation should be known on the server-side
 			assertEquals(1, installationService.getAppInstallations(customerApp).size());
 			
+			// the installation is found by its installation date
+			final Date installationDate = appInstallation.getInstallationDate();
+			assertEquals(1, installationService.getInstallationsSince(computer, new Date(installationDate.getTime() - 1L)).size());
+			assertEquals(0, installationService.getInstallationsSince(computer, installationDate).size());
+			assertEquals(1, installationService.getInstallationsBetween(new Date(installationDate.getTime() - 1L), new Date(installationDate.getTime() + 1L)).size());
+			
 			// connect with session service
 			final SessionService sessionService = SystemContext.connect(AllTests.DIR.getAbsolutePath());
 						
@@ -145,6 +160,10 @@ public class SessionServiceTest {
 			final ConfigurationItem configurationItem = appService.findRootItem(customerApp);
 			sessionService.updatePropertyState("selectedCustomerName", "Mike Miller", configurationItem, appSession1);
 			sessionService.updatePropertyState("selectedCustomerCity", "Bangalore", configurationItem, appSession1);
+			
+			// property keys are case-insensitive, so this updates the existing state
+			sessionService.updatePropertyState("SelectedCustomerCity", "Pune", configurationItem, appSession1);
+			assertEquals("Pune", sessionService.getPropertyState("selectedCustomerCity", configurationItem, appSession1));
 
 			// try to read the published state from the wrong running customer app instance
 			assertEquals(0, sessionService.getSessionStates(appSession2).size());
@@ -154,6 +173,50 @@ public class SessionServiceTest {
 			assertEquals(1, sessionStates.size());
 			assertEquals(2, sessionService.getStates(sessionStates.get(0)).size());
 			
+			// with write-behind, updates are coalesced and visible before they are written
+			sessionService.enableWriteBehind(0L, 2);
+			sessionService.updatePropertyState("selectedCustomerCity", "Mumbai", configurationItem, appSession1);
+			sessionService.updatePropertyState("SELECTEDCUSTOMERCITY", "Delhi", configurationItem, appSession1);
+			sessionService.updatePropertyState("selectedOrderId", "4711", configurationItem, appSession1);
+			assertEquals("Delhi", sessionService.getPropertyState("selectedCustomerCity", configurationItem, appSession1));
+			assertEquals("4711", sessionService.getPropertyState("selectedOrderId", configurationItem, appSession1));
+			assertEquals(2, sessionService.getConfigurationItemState(configurationItem, appSession1).size());
+			
+			// the buffer is full, so the next new property writes the pending ones first
+			sessionService.updatePropertyState("selectedOrderState", "open", configurationItem, appSession1);
+			assertEquals(3, sessionService.getConfigurationItemState(configurationItem, appSession1).size());
+			assertTrue(sessionService.disableWriteBehind());
+			assertEquals(4, sessionService.getStates(sessionStates.get(0)).size());
+			assertEquals("Delhi", sessionService.getPropertyState("selectedCustomerCity", configurationItem, appSession1));
+			
+			// a compare-and-set update succeeds only with the current replication version
+			final ConfigurationItem configItem = appService.findConfigurationItem(customerApp, ITEM_KEY_1);
+			final long configVersion = configItem.getServerReplicationVersion();
+			assertTrue(appService.compareAndSetConfigurationValue(customerApp, ITEM_KEY_1, "changed", configVersion).isUpdated());
+			assertEquals("changed", appService.getConfigurationValue(customerApp, ITEM_KEY_1));
+			assertTrue(appService.compareAndSetConfigurationValue(customerApp, ITEM_KEY_1, "stale", configVersion).isConflict());
+			assertEquals("changed", appService.getConfigurationValue(customerApp, ITEM_KEY_1));
+			assertEquals(UpdateResult.Status.NOT_FOUND, appService.compareAndSetConfigurationValue(customerApp, "unknownKey", "value", 0L).getStatus());
+			
+			// a stale writer retries with the version of the record that won
+			long version = -1L;
+			for (PropertyState propertyState : sessionService.getStates(sessionStates.get(0))) {
+				if ("selectedOrderState".equals(propertyState.getPropertyKey())) {
+					version = propertyState.getServerReplicationVersion();
+				}
+			}
+			final long stateVersion = version;
+			assertTrue(sessionService.compareAndSetPropertyState("selectedOrderState", "closed", configurationItem, appSession1, stateVersion).isUpdated());
+			final UpdateResult<PropertyState> retried = UpdateResult.retry(3, new UpdateResult.Attempt<PropertyState>() {
+				@Override
+				public UpdateResult<PropertyState> run(final PropertyState inCurrentRecord) {
+					final long expected = (inCurrentRecord != null) ? inCurrentRecord.getServerReplicationVersion() : stateVersion;
+					return sessionService.compareAndSetPropertyState("selectedOrderState", "shipped", configurationItem, appSession1, expected);
+				}
+			});
+			assertTrue(retried.isUpdated());
+			assertEquals("shipped", sessionService.getPropertyState("selectedOrderState", configurationItem, appSession1));
+			
 			// stop one application instance/session
 			sessionService.shutdown(appSession2);
 			assertEquals(1, sessionService.getActiveSessions(appInstallation).size());
@@ -161,6 +224,51 @@ public class SessionServiceTest {
 			sessionService.shutdown(appSession1);
 			assertEquals(0, sessionService.getActiveSessions(appInstallation).size());
 			
+			// shutting down the computer stops all of its running apps
+			sessionService.startApp(appInstallation);
+			assertEquals(1, sessionService.getRunningApps(computer).size());
+			sessionService.shutdown(computer);
+			assertEquals(0, sessionService.getRunningApps(computer).size());
+			assertEquals(0, sessionService.getActiveSessions(appInstallation).size());
+			
+			// starting the system starts the customer app before the order app that depends on it
+			final ApplicationConfig orderApp = ApplicationConfig.generate();
+			orderApp.setApplicationName("Order Management");
+			orderApp.setApplicationType(applicationType.getPrimaryKey());
+			orderApp.setSystemConfig(system1.getPrimaryKey());
+			appService.addApp(orderApp);
+			appService.connectApps(orderApp, customerApp);
+			final ApplicationInstallation orderInstallation = installationService.installApp(computer, orderApp);
+			final List<SessionWave> waves = sessionService.startSystem(system1);
+			assertEquals(2, waves.size());
+			assertEquals(customerApp.getPrimaryKey(), waves.get(0).getApps().get(0).getPrimaryKey());
+			assertEquals(orderApp.getPrimaryKey(), waves.get(1).getApps().get(0).getPrimaryKey());
+			assertEquals(1, waves.get(1).getSessions().size());
+			assertEquals(1, sessionService.getActiveSessions(orderInstallation).size());
+			assertEquals(2, sessionService.getRunningApps(computer).size());
+			
+			// running installations are not started twice
+			assertEquals(0, sessionService.startSystem(system1).get(0).getSessions().size());
+			assertEquals(2, sessionService.getRunningApps(computer).size());
+			
+			// shutting down the system stops the order app before the customer app
+			final List<SessionWave> shutdownWaves = sessionService.shutdownSystem(system1);
+			assertEquals(2, shutdownWaves.size());
+			assertEquals(orderApp.getPrimaryKey(), shutdownWaves.get(0).getApps().get(0).getPrimaryKey());
+			assertEquals(1, shutdownWaves.get(0).getSessions().size());
+			assertEquals(customerApp.getPrimaryKey(), shutdownWaves.get(1).getApps().get(0).getPrimaryKey());
+			assertEquals(0, sessionService.getRunningApps(computer).size());
+			
+			// uninstalling the computer deletes its installations, sessions and states
+			sessionService.enableWriteBehind(0L, 16);
+			sessionService.updatePropertyState("selectedOrderId", "4712", configurationItem, appSession1);
+			assertTrue(installationService.uninstallComputers(Arrays.asList(computer)));
+			// buffered updates of deleted sessions are discarded, not written
+			assertTrue(sessionService.disableWriteBehind());
+			assertEquals(0, infrastructureService.getComputers().size());
+			assertEquals(0, installationService.getAppInstallations(customerApp).size());
+			assertEquals(0, sessionService.getSessionStates(appSession1).size());
+			assertEquals(0, sessionService.getRunningApps(computer).size());
 			
 			AllTests.deleteExistingSystemModelFiles();
 		} catch (IOException e) {